@@ -0,0 +1,148 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.content.Context;
+import android.graphics.Insets;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.Display;
+import android.view.DisplayCutout;
+import android.view.Surface;
+import android.view.WindowInsets;
+import android.view.WindowManager;
+import android.view.WindowMetrics;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable size, rotation and insets of one display, measured by {@link DisplayGeometryCache}.
+ *
+ * Insets cover the system bars and the display cutout; overlays are placed within the usable
+ * area they leave. Before Android 11 the status bar is not known without a window, so only the
+ * navigation bar and, from Android 10, the cutout are counted.
+ */
+final class DisplayGeometry {
+    final int displayId;
+    // Full display size in pixels, in the current rotation
+    final int width;
+    final int height;
+    // One of the Surface.ROTATION_* values
+    final int rotation;
+    final int insetLeft;
+    final int insetTop;
+    final int insetRight;
+    final int insetBottom;
+    // Current refresh rate in frames per second; may change without any layout change
+    final float refreshRate;
+
+    DisplayGeometry(int displayId, int width, int height, int rotation,
+                    int insetLeft, int insetTop, int insetRight, int insetBottom, float refreshRate) {
+        this.displayId = displayId;
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+        this.insetLeft = insetLeft;
+        this.insetTop = insetTop;
+        this.insetRight = insetRight;
+        this.insetBottom = insetBottom;
+        this.refreshRate = refreshRate;
+    }
+
+    int usableWidth() {
+        return Math.max(0, width - insetLeft - insetRight);
+    }
+
+    int usableHeight() {
+        return Math.max(0, height - insetTop - insetBottom);
+    }
+
+    /**
+     * Measures {@code display}. {@code displayContext} must be a context for that display, a
+     * window context from Android 11.
+     */
+    static DisplayGeometry measure(Context displayContext, Display display) {
+        int rotation = display.getRotation();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            WindowMetrics metrics = displayContext.getSystemService(WindowManager.class)
+                .getMaximumWindowMetrics();
+            Rect bounds = metrics.getBounds();
+            Insets insets = metrics.getWindowInsets().getInsetsIgnoringVisibility(
+                WindowInsets.Type.systemBars() | WindowInsets.Type.displayCutout());
+            return new DisplayGeometry(display.getDisplayId(), bounds.width(), bounds.height(),
+                rotation, insets.left, insets.top, insets.right, insets.bottom,
+                display.getRefreshRate());
+        }
+
+        Point real = new Point();
+        Point app = new Point();
+        display.getRealSize(real);
+        display.getSize(app);
+        int left = 0, top = 0, right = 0, bottom = 0;
+        // The navigation bar is whatever the app area leaves out; its side follows the rotation
+        int navWidth = real.x - app.x;
+        int navHeight = real.y - app.y;
+        if (navWidth > 0) {
+            if (rotation == Surface.ROTATION_270) {
+                left = navWidth;
+            } else {
+                right = navWidth;
+            }
+        }
+        if (navHeight > 0) {
+            bottom = navHeight;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            DisplayCutout cutout = display.getCutout();
+            if (cutout != null) {
+                left = Math.max(left, cutout.getSafeInsetLeft());
+                top = Math.max(top, cutout.getSafeInsetTop());
+                right = Math.max(right, cutout.getSafeInsetRight());
+                bottom = Math.max(bottom, cutout.getSafeInsetBottom());
+            }
+        }
+        return new DisplayGeometry(display.getDisplayId(), real.x, real.y, rotation,
+            left, top, right, bottom, display.getRefreshRate());
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("displayId", displayId);
+        map.put("width", width);
+        map.put("height", height);
+        map.put("rotation", rotation);
+        map.put("insetLeft", insetLeft);
+        map.put("insetTop", insetTop);
+        map.put("insetRight", insetRight);
+        map.put("insetBottom", insetBottom);
+        return map;
+    }
+
+    /** Whether {@code other} places overlays the same way, i.e. differs at most in refresh rate. */
+    boolean sameLayout(DisplayGeometry other) {
+        return other != null && displayId == other.displayId && width == other.width
+            && height == other.height && rotation == other.rotation
+            && insetLeft == other.insetLeft && insetTop == other.insetTop
+            && insetRight == other.insetRight && insetBottom == other.insetBottom;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DisplayGeometry)) return false;
+        DisplayGeometry other = (DisplayGeometry) o;
+        return sameLayout(other) && Float.compare(refreshRate, other.refreshRate) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = displayId;
+        result = 31 * result + width;
+        result = 31 * result + height;
+        result = 31 * result + rotation;
+        result = 31 * result + insetLeft;
+        result = 31 * result + insetTop;
+        result = 31 * result + insetRight;
+        result = 31 * result + insetBottom;
+        return 31 * result + Float.floatToIntBits(refreshRate);
+    }
+}
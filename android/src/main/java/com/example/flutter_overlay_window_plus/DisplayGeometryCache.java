@@ -0,0 +1,173 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+import android.view.Display;
+import android.view.WindowManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the geometry and window manager of each display overlays are placed on, so drags and
+ * snaps never query the display.
+ *
+ * Entries are measured on first use and kept current by a {@link DisplayManager} listener,
+ * which sees rotations, size changes and removed displays; {@link #refresh()} re-measures after
+ * a configuration change, e.g. when the navigation bar mode changes the insets. The listener
+ * hears only about real changes. Must be used from the main thread.
+ */
+final class DisplayGeometryCache implements DisplayManager.DisplayListener {
+
+    interface Listener {
+        void onGeometryChanged(DisplayGeometry previous, DisplayGeometry geometry);
+
+        void onDisplayRemoved(int displayId);
+    }
+
+    private final Context context;
+    private final DisplayManager displayManager;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final SparseArray<DisplayGeometry> geometries = new SparseArray<>();
+    // Display or window contexts, whose window managers place windows on that display
+    private final SparseArray<Context> contexts = new SparseArray<>();
+    private boolean registered = false;
+
+    // Counters
+    private long measurements = 0;
+    private long changes = 0;
+
+    DisplayGeometryCache(Context context, Listener listener) {
+        this.context = context;
+        this.displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+        this.listener = listener;
+    }
+
+    void start() {
+        if (registered) return;
+        displayManager.registerDisplayListener(this, mainHandler);
+        registered = true;
+    }
+
+    void stop() {
+        if (!registered) return;
+        displayManager.unregisterDisplayListener(this);
+        registered = false;
+    }
+
+    /** Returns the geometry of {@code displayId}, or null if there is no such display. */
+    DisplayGeometry get(int displayId) {
+        DisplayGeometry geometry = geometries.get(displayId);
+        if (geometry == null) {
+            geometry = measure(displayId);
+            if (geometry != null) {
+                geometries.put(displayId, geometry);
+            }
+        }
+        return geometry;
+    }
+
+    /** Returns the window manager placing windows on {@code displayId}, or null if it is gone. */
+    WindowManager getWindowManager(int displayId) {
+        Context displayContext = getContext(displayId);
+        return displayContext != null
+            ? (WindowManager) displayContext.getSystemService(Context.WINDOW_SERVICE)
+            : null;
+    }
+
+    /** Describes every display overlays can be placed on, as {@link DisplayGeometry#toMap()}. */
+    List<Map<String, Object>> describeDisplays() {
+        List<Map<String, Object>> displays = new ArrayList<>();
+        for (Display display : displayManager.getDisplays()) {
+            DisplayGeometry geometry = get(display.getDisplayId());
+            if (geometry != null) {
+                displays.add(geometry.toMap());
+            }
+        }
+        return displays;
+    }
+
+    /** Re-measures every cached display, e.g. after a configuration change. */
+    void refresh() {
+        for (int i = geometries.size() - 1; i >= 0; i--) {
+            update(geometries.keyAt(i));
+        }
+    }
+
+    /** Forgets the measured geometries, keeping the display contexts, for a cache not started. */
+    void clearGeometries() {
+        geometries.clear();
+    }
+
+    @Override
+    public void onDisplayAdded(int displayId) {
+        // Measured on first use
+    }
+
+    @Override
+    public void onDisplayChanged(int displayId) {
+        if (geometries.get(displayId) != null) {
+            update(displayId);
+        }
+    }
+
+    @Override
+    public void onDisplayRemoved(int displayId) {
+        boolean known = geometries.get(displayId) != null;
+        geometries.remove(displayId);
+        contexts.remove(displayId);
+        if (known) {
+            listener.onDisplayRemoved(displayId);
+        }
+    }
+
+    private void update(int displayId) {
+        DisplayGeometry previous = geometries.get(displayId);
+        DisplayGeometry geometry = measure(displayId);
+        if (geometry == null) {
+            onDisplayRemoved(displayId);
+            return;
+        }
+        if (geometry.equals(previous)) return;
+        geometries.put(displayId, geometry);
+        changes++;
+        listener.onGeometryChanged(previous, geometry);
+    }
+
+    private DisplayGeometry measure(int displayId) {
+        Display display = displayManager.getDisplay(displayId);
+        Context displayContext = getContext(displayId);
+        if (display == null || displayContext == null) return null;
+        measurements++;
+        return DisplayGeometry.measure(displayContext, display);
+    }
+
+    private Context getContext(int displayId) {
+        Context displayContext = contexts.get(displayId);
+        if (displayContext != null) return displayContext;
+
+        Display display = displayManager.getDisplay(displayId);
+        if (display == null) return null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            displayContext = context.createWindowContext(display,
+                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY, null);
+        } else {
+            displayContext = context.createDisplayContext(display);
+        }
+        contexts.put(displayId, displayContext);
+        return displayContext;
+    }
+
+    long getMeasurements() {
+        return measurements;
+    }
+
+    long getChanges() {
+        return changes;
+    }
+}
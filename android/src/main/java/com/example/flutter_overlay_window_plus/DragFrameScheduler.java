@@ -0,0 +1,97 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.view.Choreographer;
+
+/**
+ * Coalesces drag moves so the overlay window is relaid out at most once per display frame.
+ *
+ * Only the latest requested position is kept; it is applied from a {@link Choreographer}
+ * frame callback. Must be used from the main thread.
+ */
+class DragFrameScheduler implements Choreographer.FrameCallback {
+
+    interface Target {
+        void applyPosition(int x, int y);
+    }
+
+    private final Target target;
+    private final Choreographer choreographer;
+
+    private int pendingX, pendingY;
+    private boolean hasPending = false;
+    private boolean frameScheduled = false;
+
+    // Counters
+    private long moveRequests = 0;
+    private long touchSamples = 0;
+    private long appliedRelayouts = 0;
+
+    DragFrameScheduler(Target target) {
+        this.target = target;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Records a new drag position. {@code samples} is the number of touch samples
+     * (current plus historical) that were folded into this move.
+     */
+    void requestMove(int x, int y, int samples) {
+        pendingX = x;
+        pendingY = y;
+        hasPending = true;
+        moveRequests++;
+        touchSamples += samples;
+
+        if (!frameScheduled) {
+            frameScheduled = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    /** Applies any pending position immediately, e.g. when the drag ends. */
+    void flush() {
+        if (frameScheduled) {
+            choreographer.removeFrameCallback(this);
+            frameScheduled = false;
+        }
+        applyPending();
+    }
+
+    /** Drops any pending position without applying it. */
+    void cancel() {
+        if (frameScheduled) {
+            choreographer.removeFrameCallback(this);
+            frameScheduled = false;
+        }
+        hasPending = false;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        applyPending();
+    }
+
+    private void applyPending() {
+        if (!hasPending) return;
+        hasPending = false;
+        appliedRelayouts++;
+        target.applyPosition(pendingX, pendingY);
+    }
+
+    long getMoveRequests() {
+        return moveRequests;
+    }
+
+    long getTouchSamples() {
+        return touchSamples;
+    }
+
+    long getAppliedRelayouts() {
+        return appliedRelayouts;
+    }
+
+    long getSkippedRelayouts() {
+        return moveRequests - appliedRelayouts;
+    }
+}
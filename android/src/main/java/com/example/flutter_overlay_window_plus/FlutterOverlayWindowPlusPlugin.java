@@ -10,11 +10,16 @@ import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
 import io.flutter.plugin.common.EventChannel;
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryCodec;
+import io.flutter.plugin.common.BinaryMessenger;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.net.Uri;
+import android.content.ServiceConnection;
 import android.os.Build;
-import android.provider.Settings;
+import android.os.IBinder;
+import android.os.SystemClock;
 import android.util.Log;
 
 /** FlutterOverlayWindowPlusPlugin */
@@ -25,14 +30,46 @@ public class FlutterOverlayWindowPlusPlugin implements FlutterPlugin, MethodCall
   /// when the Flutter Engine is detached from the Activity
   private MethodChannel channel;
   private EventChannel eventChannel;
+  private BasicMessageChannel<java.nio.ByteBuffer> binaryChannel;
+  private BasicMessageChannel<java.nio.ByteBuffer> frameChannel;
+  // Frame replies, one byte sent up to the position: 1 if the frame was taken, 0 if it was
+  // malformed or no such overlay exists. Never written after this, so shared by all replies
+  private static final java.nio.ByteBuffer FRAME_TAKEN = java.nio.ByteBuffer.allocateDirect(1).put((byte) 1);
+  private static final java.nio.ByteBuffer FRAME_REJECTED = java.nio.ByteBuffer.allocateDirect(1).put((byte) 0);
   private Context context;
+  // False when registered inside one of the plugin's own overlay engines
+  private boolean appEngine;
   private Activity activity;
+  // Cached overlay permission, so hot show calls skip the binder check
+  // App's engine only; overlay engines check the permission directly
+  private OverlayPermissionMonitor permissions;
+  // Set while the overlay service runs; requests then skip the startService round trip
+  private OverlayService.LocalBinder serviceBinder;
+
+  private final ServiceConnection serviceConnection = new ServiceConnection() {
+    @Override
+    public void onServiceConnected(ComponentName name, IBinder service) {
+      serviceBinder = (OverlayService.LocalBinder) service;
+    }
+
+    @Override
+    public void onServiceDisconnected(ComponentName name) {
+      serviceBinder = null;
+    }
+  };
 
   @Override
   public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
     channel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), "flutter_overlay_window_plus");
     channel.setMethodCallHandler(this);
     
+    context = flutterPluginBinding.getApplicationContext();
+    // Overlay engines register this plugin too, but only get the method channel. The event
+    // sink, the payload and frame handlers, the permission monitor and the service binding
+    // belong to the app's engine; each overlay engine must not add another.
+    appEngine = !OverlayEngineManager.isCreatingEngine();
+    if (!appEngine) return;
+
     eventChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(), "flutter_overlay_window_plus_events");
     eventChannel.setStreamHandler(new EventChannel.StreamHandler() {
       @Override
@@ -46,23 +83,56 @@ public class FlutterOverlayWindowPlusPlugin implements FlutterPlugin, MethodCall
       }
     });
     
-    context = flutterPluginBinding.getApplicationContext();
+    // Binary payloads bypass StandardMessageCodec; the direct buffer is handed to the service as-is
+    binaryChannel = new BasicMessageChannel<>(flutterPluginBinding.getBinaryMessenger(), "flutter_overlay_window_plus/binary", BinaryCodec.INSTANCE_DIRECT);
+    binaryChannel.setMessageHandler((message, reply) -> {
+      OverlayService.shareBinaryData(message);
+      reply.reply(null);
+    });
+
+    // Frames are copied into the overlay's bitmaps on a background queue, off the main thread
+    BinaryMessenger messenger = flutterPluginBinding.getBinaryMessenger();
+    frameChannel = new BasicMessageChannel<>(messenger, "flutter_overlay_window_plus/frames", BinaryCodec.INSTANCE_DIRECT, messenger.makeBackgroundTaskQueue());
+    frameChannel.setMessageHandler((message, reply) -> {
+      reply.reply(OverlayService.shareFrame(message) ? FRAME_TAKEN : FRAME_REJECTED);
+    });
+    
+    OverlayEngineManager.onPluginAttached(context);
+    permissions = new OverlayPermissionMonitor(context);
+    permissions.start();
+
+    // No BIND_AUTO_CREATE: the connection follows the service as showOverlay starts and stops it
+    context.bindService(new Intent(context, OverlayService.class), serviceConnection, 0);
+  }
+
+  private boolean isPermissionGranted() {
+    return permissions != null ? permissions.isGranted() : OverlayPermissionMonitor.check(context);
   }
 
   @Override
   public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+    // Covers argument handling and the synchronous work of each handler
+    long start = OverlayMetrics.start();
     switch (call.method) {
       case "isPermissionGranted":
         result.success(isPermissionGranted());
         break;
       case "requestPermission":
-        requestPermission(result);
+        if (permissions != null) {
+          permissions.request(result::success);
+        } else {
+          // An overlay engine has no activity to return to from the settings page
+          result.success(isPermissionGranted());
+        }
         break;
       case "showOverlay":
         showOverlay(call, result);
         break;
       case "closeOverlay":
-        closeOverlay(result);
+        closeOverlay(call, result);
+        break;
+      case "hideOverlay":
+        hideOverlay(call, result);
         break;
       case "shareData":
         shareData(call, result);
@@ -76,39 +146,64 @@ public class FlutterOverlayWindowPlusPlugin implements FlutterPlugin, MethodCall
       case "moveOverlay":
         moveOverlay(call, result);
         break;
+      case "applyOverlayUpdates":
+        applyOverlayUpdates(call, result);
+        break;
       case "getOverlayPosition":
-        getOverlayPosition(result);
+        getOverlayPosition(call, result);
+        break;
+      case "setEngineWarmUpMode":
+        setEngineWarmUpMode(call, result);
+        break;
+      case "getOverlayStats":
+        java.util.Map<String, Object> stats = OverlayService.getOverlayStats(overlayId(call));
+        if (permissions != null) {
+          stats.put("permissionChecks", permissions.getChecks());
+          stats.put("permissionCacheHits", permissions.getCacheHits());
+        }
+        result.success(stats);
+        break;
+      case "configureNotification":
+        configureNotification(call, result);
+        break;
+      case "setFrameMonitoring":
+        setFrameMonitoring(call, result);
+        break;
+      case "setPositionStreaming":
+        setPositionStreaming(call, result);
+        break;
+      case "getDisplays":
+        getDisplays(result);
+        break;
+      case "getPowerMode":
+        result.success(OverlayService.isLowPowerMode() ? 1 : 0);
+        break;
+      case "configureEventReplay":
+        configureEventReplay(call, result);
         break;
       case "minimizeApp":
         minimizeApp(result);
         break;
+      case "setMetricsEnabled":
+        setMetricsEnabled(call, result);
+        break;
+      case "getMetrics":
+        OverlayService.snapshotMetrics(result::success);
+        break;
+      case "resetMetrics":
+        OverlayMetrics.reset();
+        result.success(true);
+        break;
       default:
         result.notImplemented();
         break;
     }
+    OverlayMetrics.recordMethod(call.method, start);
   }
 
-  private boolean isPermissionGranted() {
-    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-      return Settings.canDrawOverlays(context);
-    }
-    return true;
-  }
-
-  private void requestPermission(Result result) {
-    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-      if (!Settings.canDrawOverlays(context)) {
-        Intent intent = new Intent(Settings.ACTION_MANAGE_OVERLAY_PERMISSION,
-                Uri.parse("package:" + context.getPackageName()));
-        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-        context.startActivity(intent);
-        result.success(false);
-      } else {
-        result.success(true);
-      }
-    } else {
-      result.success(true);
-    }
+  private String overlayId(MethodCall call) {
+    String overlayId = call.argument("overlayId");
+    return overlayId != null ? overlayId : OverlayService.DEFAULT_OVERLAY_ID;
   }
 
   private void showOverlay(MethodCall call, Result result) {
@@ -118,27 +213,27 @@ public class FlutterOverlayWindowPlusPlugin implements FlutterPlugin, MethodCall
     }
 
     try {
-      Intent intent = new Intent(context, OverlayService.class);
-      intent.putExtra("height", call.argument("height") != null ? ((Number) call.argument("height")).intValue() : 0);
-      intent.putExtra("width", call.argument("width") != null ? ((Number) call.argument("width")).intValue() : 0);
-      intent.putExtra("alignment", call.argument("alignment") != null ? ((Number) call.argument("alignment")).intValue() : 0);
-      intent.putExtra("visibility", call.argument("visibility") != null ? ((Number) call.argument("visibility")).intValue() : 0);
-      intent.putExtra("flag", call.argument("flag") != null ? ((Number) call.argument("flag")).intValue() : 0);
-      intent.putExtra("overlayTitle", (String) call.argument("overlayTitle"));
-      intent.putExtra("overlayContent", (String) call.argument("overlayContent"));
-      intent.putExtra("enableDrag", call.argument("enableDrag") != null ? (Boolean) call.argument("enableDrag") : false);
-      intent.putExtra("positionGravity", call.argument("positionGravity") != null ? ((Number) call.argument("positionGravity")).intValue() : 0);
-      
-      if (call.argument("startPosition") != null) {
-        java.util.Map startPosition = (java.util.Map) call.argument("startPosition");
-        intent.putExtra("startX", startPosition.get("x") != null ? ((Number) startPosition.get("x")).intValue() : 0);
-        intent.putExtra("startY", startPosition.get("y") != null ? ((Number) startPosition.get("y")).intValue() : 0);
-      }
+      // The whole config arrives as one byte[] and is decoded in a single pass
+      OverlayConfig config = OverlayConfig.decode((byte[]) call.arguments(), SystemClock.elapsedRealtimeNanos());
 
-      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-        context.startForegroundService(intent);
+      // A running service is called directly; the Intent is only sent to cold-start it
+      OverlayService service = serviceBinder != null ? serviceBinder.getService() : null;
+      if (service != null) {
+        service.showOverlay(config);
       } else {
-        context.startService(intent);
+        OverlayService.enqueueConfig(config);
+        Intent intent = new Intent(context, OverlayService.class);
+        try {
+          if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(intent);
+          } else {
+            context.startService(intent);
+          }
+        } catch (RuntimeException e) {
+          // Not started, e.g. background start restrictions: don't show it on a later start
+          OverlayService.dequeueConfig(config);
+          throw e;
+        }
       }
       
       result.success(true);
@@ -148,8 +243,14 @@ public class FlutterOverlayWindowPlusPlugin implements FlutterPlugin, MethodCall
     }
   }
 
-  private void closeOverlay(Result result) {
+  private void closeOverlay(MethodCall call, Result result) {
     try {
+      // Close a single overlay if an id was given, otherwise stop the service and all overlays
+      String overlayId = call.argument("overlayId");
+      if (overlayId != null) {
+        result.success(OverlayService.closeOverlay(overlayId));
+        return;
+      }
       Intent intent = new Intent(context, OverlayService.class);
       intent.setAction("CLOSE_OVERLAY");
       context.stopService(intent);
@@ -160,10 +261,20 @@ public class FlutterOverlayWindowPlusPlugin implements FlutterPlugin, MethodCall
     }
   }
 
+  private void hideOverlay(MethodCall call, Result result) {
+    try {
+      OverlayService.hideOverlay(overlayId(call));
+      result.success(true);
+    } catch (Exception e) {
+      Log.e("FlutterOverlayWindowPlus", "Error hiding overlay: " + e.getMessage());
+      result.success(false);
+    }
+  }
+
   private void shareData(MethodCall call, Result result) {
     try {
       String data = call.argument("data");
-      OverlayService.shareData(data);
+      OverlayService.shareData(overlayId(call), data);
       result.success(true);
     } catch (Exception e) {
       Log.e("FlutterOverlayWindowPlus", "Error sharing data: " + e.getMessage());
@@ -174,7 +285,7 @@ public class FlutterOverlayWindowPlusPlugin implements FlutterPlugin, MethodCall
   private void updateFlag(MethodCall call, Result result) {
     try {
       int flag = call.argument("flag");
-      OverlayService.updateFlag(flag);
+      OverlayService.updateFlag(overlayId(call), flag);
       result.success(true);
     } catch (Exception e) {
       Log.e("FlutterOverlayWindowPlus", "Error updating flag: " + e.getMessage());
@@ -186,7 +297,7 @@ public class FlutterOverlayWindowPlusPlugin implements FlutterPlugin, MethodCall
     try {
       int width = call.argument("width");
       int height = call.argument("height");
-      OverlayService.resizeOverlay(width, height);
+      OverlayService.resizeOverlay(overlayId(call), width, height);
       result.success(true);
     } catch (Exception e) {
       Log.e("FlutterOverlayWindowPlus", "Error resizing overlay: " + e.getMessage());
@@ -199,7 +310,7 @@ public class FlutterOverlayWindowPlusPlugin implements FlutterPlugin, MethodCall
       java.util.Map position = call.argument("position");
       int x = (int) position.get("x");
       int y = (int) position.get("y");
-      OverlayService.moveOverlay(x, y);
+      OverlayService.moveOverlay(overlayId(call), x, y);
       result.success(true);
     } catch (Exception e) {
       Log.e("FlutterOverlayWindowPlus", "Error moving overlay: " + e.getMessage());
@@ -207,9 +318,21 @@ public class FlutterOverlayWindowPlusPlugin implements FlutterPlugin, MethodCall
     }
   }
 
-  private void getOverlayPosition(Result result) {
+  private void applyOverlayUpdates(MethodCall call, Result result) {
+    try {
+      java.util.List operations = call.argument("operations");
+      result.success(OverlayService.applyOverlayUpdates(overlayId(call), operations));
+    } catch (IllegalArgumentException e) {
+      result.error("INVALID_ARGUMENT", e.getMessage(), null);
+    } catch (Exception e) {
+      Log.e("FlutterOverlayWindowPlus", "Error applying overlay updates: " + e.getMessage());
+      result.success(null);
+    }
+  }
+
+  private void getOverlayPosition(MethodCall call, Result result) {
     try {
-      int[] position = OverlayService.getOverlayPosition();
+      int[] position = OverlayService.getOverlayPosition(overlayId(call));
       if (position != null) {
         java.util.Map<String, Integer> positionMap = new java.util.HashMap<>();
         positionMap.put("x", position[0]);
@@ -224,6 +347,83 @@ public class FlutterOverlayWindowPlusPlugin implements FlutterPlugin, MethodCall
     }
   }
 
+  private void setEngineWarmUpMode(MethodCall call, Result result) {
+    try {
+      int mode = call.argument("mode");
+      OverlayEngineManager.setWarmUpMode(context, mode);
+      result.success(true);
+    } catch (Exception e) {
+      Log.e("FlutterOverlayWindowPlus", "Error setting engine warm-up mode: " + e.getMessage());
+      result.success(false);
+    }
+  }
+
+  private void configureNotification(MethodCall call, Result result) {
+    try {
+      int maxUpdatesPerSecond = call.argument("maxUpdatesPerSecond");
+      boolean mirrorSharedData = call.argument("mirrorSharedData");
+      OverlayService.configureNotification(maxUpdatesPerSecond, mirrorSharedData);
+      result.success(true);
+    } catch (Exception e) {
+      Log.e("FlutterOverlayWindowPlus", "Error configuring notification: " + e.getMessage());
+      result.success(false);
+    }
+  }
+
+  private void setMetricsEnabled(MethodCall call, Result result) {
+    try {
+      boolean enabled = call.argument("enabled");
+      OverlayMetrics.setEnabled(enabled);
+      result.success(true);
+    } catch (Exception e) {
+      Log.e("FlutterOverlayWindowPlus", "Error setting metrics: " + e.getMessage());
+      result.success(false);
+    }
+  }
+
+  private void setFrameMonitoring(MethodCall call, Result result) {
+    try {
+      boolean enabled = call.argument("enabled");
+      OverlayService.setFrameMonitoring(enabled);
+      result.success(true);
+    } catch (Exception e) {
+      Log.e("FlutterOverlayWindowPlus", "Error setting frame monitoring: " + e.getMessage());
+      result.success(false);
+    }
+  }
+
+  private void configureEventReplay(MethodCall call, Result result) {
+    try {
+      int bufferSize = call.argument("bufferSize");
+      OverlayService.configureEventReplay(bufferSize);
+      result.success(true);
+    } catch (Exception e) {
+      Log.e("FlutterOverlayWindowPlus", "Error configuring event replay: " + e.getMessage());
+      result.success(false);
+    }
+  }
+
+  private void getDisplays(Result result) {
+    try {
+      result.success(OverlayService.describeDisplays(context));
+    } catch (Exception e) {
+      Log.e("FlutterOverlayWindowPlus", "Error getting displays: " + e.getMessage());
+      result.success(null);
+    }
+  }
+
+  private void setPositionStreaming(MethodCall call, Result result) {
+    try {
+      boolean enabled = call.argument("enabled");
+      int maxHz = call.argument("maxHz");
+      OverlayService.setPositionStreaming(enabled, maxHz);
+      result.success(true);
+    } catch (Exception e) {
+      Log.e("FlutterOverlayWindowPlus", "Error setting position streaming: " + e.getMessage());
+      result.success(false);
+    }
+  }
+
   private void minimizeApp(Result result) {
     if (activity != null) {
       activity.moveTaskToBack(true);
@@ -236,26 +436,44 @@ public class FlutterOverlayWindowPlusPlugin implements FlutterPlugin, MethodCall
   @Override
   public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
     channel.setMethodCallHandler(null);
+    if (!appEngine) return;
     eventChannel.setStreamHandler(null);
+    binaryChannel.setMessageHandler(null);
+    frameChannel.setMessageHandler(null);
+    permissions.stop();
+    context.unbindService(serviceConnection);
+    serviceBinder = null;
   }
 
   @Override
   public void onAttachedToActivity(@NonNull ActivityPluginBinding binding) {
     this.activity = binding.getActivity();
+    if (permissions != null) {
+      permissions.setActivity(activity);
+    }
   }
 
   @Override
   public void onDetachedFromActivityForConfigChanges() {
     this.activity = null;
+    if (permissions != null) {
+      permissions.setActivity(null);
+    }
   }
 
   @Override
   public void onReattachedToActivityForConfigChanges(@NonNull ActivityPluginBinding binding) {
     this.activity = binding.getActivity();
+    if (permissions != null) {
+      permissions.setActivity(activity);
+    }
   }
 
   @Override
   public void onDetachedFromActivity() {
     this.activity = null;
+    if (permissions != null) {
+      permissions.setActivity(null);
+    }
   }
 } 
\ No newline at end of file
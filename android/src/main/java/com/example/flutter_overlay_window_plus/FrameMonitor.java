@@ -0,0 +1,152 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import java.util.Arrays;
+
+/**
+ * Opt-in frame-time monitor for one overlay window, summarized as FRAME_STATS events.
+ *
+ * Overlay windows added through WindowManager have no {@code Window}, so per-window
+ * FrameMetrics are not available; instead an {@link ViewTreeObserver.OnDrawListener} marks
+ * frames in which the overlay drew and a {@link Choreographer} callback measures the interval
+ * between the vsyncs of consecutive drawing frames; that is not how long a frame took to
+ * render. Intervals longer than the display refresh period count as dropped frames. Samples
+ * are summarized per fixed summary window, back to back from the first sample after a reset,
+ * not a sliding window: once a window has passed the percentiles are sent and the samples
+ * reset. Must be used from the main thread.
+ */
+class FrameMonitor implements Choreographer.FrameCallback, ViewTreeObserver.OnDrawListener {
+    private static final long SUMMARY_WINDOW_NANOS = 1_000_000_000L;
+    private static final int MAX_SAMPLES = 512;
+
+    private static volatile boolean enabled = false;
+
+    private final byte[] overlayId;
+    private long refreshPeriodNanos;
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable emitSummary = this::emitSummary;
+
+    // Preallocated, so sampling and summarizing do not allocate
+    private final long[] samples = new long[MAX_SAMPLES];
+    private final long[] sorted = new long[MAX_SAMPLES];
+    private int sampleCount = 0;
+    private long droppedFrames = 0;
+    private long windowStartNanos = 0;
+
+    private View view;
+    private boolean drewSinceFrame = false;
+    private boolean frameScheduled = false;
+    private long lastFrameNanos = 0;
+
+    // Counters
+    private long summariesSent = 0;
+
+    FrameMonitor(byte[] overlayId, float refreshRate) {
+        this.overlayId = overlayId;
+        setRefreshRate(refreshRate);
+    }
+
+    /** Follows the refresh rate of the overlay's display, which decides what counts as dropped. */
+    void setRefreshRate(float refreshRate) {
+        refreshPeriodNanos = (long) (1_000_000_000L / (refreshRate > 0 ? refreshRate : 60f));
+    }
+
+    static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    void attach(View view) {
+        detach();
+        this.view = view;
+        view.getViewTreeObserver().addOnDrawListener(this);
+    }
+
+    void detach() {
+        if (view != null) {
+            view.getViewTreeObserver().removeOnDrawListener(this);
+            view = null;
+        }
+        choreographer.removeFrameCallback(this);
+        handler.removeCallbacks(emitSummary);
+        frameScheduled = false;
+        lastFrameNanos = 0;
+        sampleCount = 0;
+        droppedFrames = 0;
+    }
+
+    @Override
+    public void onDraw() {
+        if (!enabled) return;
+        drewSinceFrame = true;
+        if (!frameScheduled) {
+            frameScheduled = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (!drewSinceFrame) {
+            // Rendering went idle; the next draw starts a new run of frames
+            lastFrameNanos = 0;
+            if (sampleCount > 0) {
+                handler.postDelayed(emitSummary,
+                    Math.max(0, windowStartNanos + SUMMARY_WINDOW_NANOS - frameTimeNanos) / 1_000_000 + 1);
+            }
+            return;
+        }
+        drewSinceFrame = false;
+
+        if (lastFrameNanos != 0) {
+            record(frameTimeNanos - lastFrameNanos, frameTimeNanos);
+        }
+        lastFrameNanos = frameTimeNanos;
+        frameScheduled = true;
+        choreographer.postFrameCallback(this);
+    }
+
+    private void record(long durationNanos, long frameTimeNanos) {
+        if (sampleCount == 0) {
+            windowStartNanos = frameTimeNanos;
+            handler.removeCallbacks(emitSummary);
+        }
+        if (sampleCount < MAX_SAMPLES) {
+            samples[sampleCount++] = durationNanos;
+        }
+        long missed = (durationNanos + refreshPeriodNanos / 2) / refreshPeriodNanos - 1;
+        if (missed > 0) droppedFrames += missed;
+
+        if (frameTimeNanos - windowStartNanos >= SUMMARY_WINDOW_NANOS) {
+            emitSummary();
+        }
+    }
+
+    private void emitSummary() {
+        handler.removeCallbacks(emitSummary);
+        if (sampleCount == 0) return;
+
+        System.arraycopy(samples, 0, sorted, 0, sampleCount);
+        Arrays.sort(sorted, 0, sampleCount);
+        OverlayService.events.add(OverlayEventBatcher.FRAME_STATS, overlayId, sampleCount,
+            droppedFrames, percentile(50) / 1000, percentile(90) / 1000, percentile(99) / 1000,
+            sorted[sampleCount - 1] / 1000);
+        summariesSent++;
+        sampleCount = 0;
+        droppedFrames = 0;
+    }
+
+    private long percentile(int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sampleCount) - 1;
+        return sorted[Math.max(0, Math.min(index, sampleCount - 1))];
+    }
+
+    long getSummariesSent() {
+        return summariesSent;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.view.Display;
+import android.view.Gravity;
+import android.view.WindowManager;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Immutable configuration of one {@code showOverlay} call, decoded in a single pass from the
+ * binary form written by {@code OverlayConfig.encode} in lib/src/overlay_config.dart.
+ *
+ * Enum indexes are translated to their Android values while decoding. Layout, little-endian:
+ * <pre>
+ * u8 version, i32 width, i32 height, u8 alignment, u8 visibility, u8 flag, u8 positionGravity,
+ * u8 options (bit 0 enableDrag, 1 flutterContent, 2 startPosition, 3 snapAnimation,
+ * 4 displayId), [i32 startX, i32 startY], [f32 snapStiffness, f32 snapDampingRatio],
+ * [i32 displayId],
+ * string overlayId, string overlayTitle, string overlayContent   (string: u16 length, UTF-8)
+ * </pre>
+ */
+final class OverlayConfig {
+    static final int VERSION = 1;
+
+    private static final int ENABLE_DRAG = 1;
+    private static final int FLUTTER_CONTENT = 1 << 1;
+    private static final int START_POSITION = 1 << 2;
+    private static final int SNAP_ANIMATION = 1 << 3;
+    private static final int DISPLAY_ID = 1 << 4;
+
+    final String overlayId;
+    final int width;
+    final int height;
+    final int alignment;
+    final int visibility;
+    final int flag;
+    final int positionGravity;
+    final boolean enableDrag;
+    final boolean flutterContent;
+    // -1 when no start position was given
+    final int startX;
+    final int startY;
+    final boolean snapAnimated;
+    final float snapStiffness;
+    final float snapDampingRatio;
+    // Display.DEFAULT_DISPLAY when no display was given
+    final int displayId;
+    final String overlayTitle;
+    final String overlayContent;
+    // SystemClock.elapsedRealtimeNanos() of the request, for measuring show latency; 0 if unknown
+    final long requestedAtNanos;
+
+    private OverlayConfig(ByteBuffer in, long requestedAtNanos) {
+        width = in.getInt();
+        height = in.getInt();
+        alignment = getAlignment(in.get() & 0xFF);
+        visibility = OverlayNotificationController.getVisibility(in.get() & 0xFF);
+        flag = getFlag(in.get() & 0xFF);
+        positionGravity = in.get() & 0xFF;
+
+        int options = in.get() & 0xFF;
+        enableDrag = (options & ENABLE_DRAG) != 0;
+        flutterContent = (options & FLUTTER_CONTENT) != 0;
+        if ((options & START_POSITION) != 0) {
+            startX = in.getInt();
+            startY = in.getInt();
+        } else {
+            startX = -1;
+            startY = -1;
+        }
+        snapAnimated = (options & SNAP_ANIMATION) != 0;
+        if (snapAnimated) {
+            snapStiffness = in.getFloat();
+            snapDampingRatio = in.getFloat();
+        } else {
+            snapStiffness = SnapAnimator.DEFAULT_STIFFNESS;
+            snapDampingRatio = SnapAnimator.DEFAULT_DAMPING_RATIO;
+        }
+        displayId = (options & DISPLAY_ID) != 0 ? in.getInt() : Display.DEFAULT_DISPLAY;
+
+        String id = readString(in);
+        overlayId = id.isEmpty() ? OverlayService.DEFAULT_OVERLAY_ID : id;
+        overlayTitle = readString(in);
+        overlayContent = readString(in);
+        this.requestedAtNanos = requestedAtNanos;
+    }
+
+    /**
+     * Decodes {@code bytes}.
+     *
+     * @throws IllegalArgumentException if the version is unknown or the data is truncated
+     */
+    static OverlayConfig decode(byte[] bytes, long requestedAtNanos) {
+        if (bytes == null || bytes.length == 0 || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported overlay config version");
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes, 1, bytes.length - 1).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            return new OverlayConfig(in, requestedAtNanos);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated overlay config", e);
+        }
+    }
+
+    /** Maps an OverlayAlignment index from Dart to a Gravity. */
+    static int getAlignment(int alignmentIndex) {
+        switch (alignmentIndex) {
+            case 0: return Gravity.CENTER;
+            case 1: return Gravity.TOP;
+            case 2: return Gravity.BOTTOM;
+            case 3: return Gravity.LEFT;
+            case 4: return Gravity.RIGHT;
+            case 5: return Gravity.TOP | Gravity.LEFT;
+            case 6: return Gravity.TOP | Gravity.RIGHT;
+            case 7: return Gravity.BOTTOM | Gravity.LEFT;
+            case 8: return Gravity.BOTTOM | Gravity.RIGHT;
+            default: return Gravity.CENTER;
+        }
+    }
+
+    // Number of flag indexes getFlag maps, the OverlayFlag values in Dart
+    static final int FLAG_COUNT = 2;
+
+    /** Maps an OverlayFlag index from Dart to window flags. */
+    static int getFlag(int flagIndex) {
+        switch (flagIndex) {
+            case 0: return WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE; // defaultFlag
+            case 1: return WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE | WindowManager.LayoutParams.FLAG_WATCH_OUTSIDE_TOUCH; // focusPointer
+            default: return WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        int offset = in.position();
+        in.position(offset + length);
+        return new String(in.array(), offset, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+import io.flutter.FlutterInjector;
+import io.flutter.embedding.android.FlutterView;
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.embedding.engine.FlutterEngineCache;
+import io.flutter.embedding.engine.FlutterEngineGroup;
+import io.flutter.embedding.engine.dart.DartExecutor;
+import io.flutter.embedding.engine.renderer.FlutterUiDisplayListener;
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryCodec;
+import io.flutter.plugin.common.StringCodec;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Owns the FlutterEngines that run the {@code overlayMain} entry point.
+ *
+ * Engines are spawned from one {@link FlutterEngineGroup}, so overlays showing Flutter content
+ * share the VM snapshot and GPU context. A pre-warmed spare engine is kept in
+ * {@link FlutterEngineCache} and handed to the first overlay that needs one. When engines are
+ * created and released depends on the warm-up mode:
+ * <ul>
+ *   <li>{@link #MODE_LAZY}: created on first show, destroyed when the overlay closes.</li>
+ *   <li>{@link #MODE_EAGER}: created when the plugin attaches, kept alive between shows.</li>
+ *   <li>{@link #MODE_KEEP_ALIVE}: created on first show, kept alive between shows.</li>
+ * </ul>
+ * All methods must be called on the main thread.
+ */
+final class OverlayEngineManager {
+    private static final String TAG = "OverlayEngineManager";
+    static final String ENGINE_ID = "flutter_overlay_window_plus.overlay_engine";
+    static final String ENTRY_POINT = "overlayMain";
+    static final String MESSAGE_CHANNEL = "flutter_overlay_window_plus/overlay_messages";
+    static final String PAYLOAD_CHANNEL = "flutter_overlay_window_plus/overlay_payloads";
+
+    private static final String PREFS_NAME = "flutter_overlay_window_plus";
+    private static final String PREF_WARM_UP_MODE = "engineWarmUpMode";
+
+    // Warm-up modes, matching the OverlayEngineWarmUp enum indexes in Dart
+    static final int MODE_LAZY = 0;
+    static final int MODE_EAGER = 1;
+    static final int MODE_KEEP_ALIVE = 2;
+
+    private static int warmUpMode = MODE_LAZY;
+    private static boolean creating = false;
+    private static FlutterEngineGroup engineGroup;
+
+    // Engines currently assigned to an overlay, keyed by overlay id
+    private static final Map<String, EngineHandle> engines = new HashMap<>();
+
+    // Timings, -1 until measured
+    private static long engineStartupMs = -1;
+    private static long timeToFirstFrameMs = -1;
+
+    private static final class EngineHandle {
+        final String cacheId;
+        final FlutterEngine engine;
+        final BasicMessageChannel<String> messageChannel;
+        final BasicMessageChannel<ByteBuffer> payloadChannel;
+
+        EngineHandle(String cacheId, FlutterEngine engine) {
+            this.cacheId = cacheId;
+            this.engine = engine;
+            this.messageChannel = new BasicMessageChannel<>(
+                engine.getDartExecutor(), MESSAGE_CHANNEL, StringCodec.INSTANCE);
+            this.payloadChannel = new BasicMessageChannel<>(
+                engine.getDartExecutor(), PAYLOAD_CHANNEL, BinaryCodec.INSTANCE_DIRECT);
+        }
+    }
+
+    private OverlayEngineManager() {
+    }
+
+    /** Restores the persisted warm-up mode and pre-warms the engine in eager mode. */
+    static void onPluginAttached(Context context) {
+        if (creating) return; // Plugin registration inside one of our own engines
+        warmUpMode = getPreferences(context).getInt(PREF_WARM_UP_MODE, MODE_LAZY);
+        if (warmUpMode == MODE_EAGER) {
+            warmUp(context);
+        }
+    }
+
+    static void setWarmUpMode(Context context, int mode) {
+        warmUpMode = mode;
+        getPreferences(context).edit().putInt(PREF_WARM_UP_MODE, mode).apply();
+        if (mode == MODE_EAGER) {
+            warmUp(context);
+        }
+    }
+
+    /** True while one of our own engines is being created, i.e. while its plugins register. */
+    static boolean isCreatingEngine() {
+        return creating;
+    }
+
+    static int getWarmUpMode() {
+        return warmUpMode;
+    }
+
+    /** Makes sure a spare, running engine is waiting in the cache. */
+    static void warmUp(Context context) {
+        if (creating || FlutterEngineCache.getInstance().contains(ENGINE_ID)) return;
+        FlutterEngineCache.getInstance().put(ENGINE_ID, createEngine(context));
+    }
+
+    private static FlutterEngine createEngine(Context context) {
+        Context appContext = context.getApplicationContext();
+        if (engineGroup == null) {
+            engineGroup = new FlutterEngineGroup(appContext);
+        }
+
+        long start = SystemClock.uptimeMillis();
+        FlutterEngine engine;
+        creating = true;
+        try {
+            engine = engineGroup.createAndRunEngine(appContext, new DartExecutor.DartEntrypoint(
+                FlutterInjector.instance().flutterLoader().findAppBundlePath(), ENTRY_POINT));
+        } finally {
+            creating = false;
+        }
+
+        engineStartupMs = SystemClock.uptimeMillis() - start;
+        Log.d(TAG, "Overlay engine started in " + engineStartupMs + "ms");
+        return engine;
+    }
+
+    /** Returns the engine assigned to {@code overlayId}, taking the spare or spawning one if needed. */
+    static FlutterEngine obtainEngine(Context context, String overlayId) {
+        EngineHandle handle = engines.get(overlayId);
+        if (handle != null) {
+            return handle.engine;
+        }
+        if (creating) return null;
+
+        FlutterEngineCache cache = FlutterEngineCache.getInstance();
+        FlutterEngine engine = cache.get(ENGINE_ID);
+        if (engine != null) {
+            cache.remove(ENGINE_ID);
+        } else {
+            engine = createEngine(context);
+        }
+
+        handle = new EngineHandle(ENGINE_ID + "/" + overlayId, engine);
+        cache.put(handle.cacheId, engine);
+        engines.put(overlayId, handle);
+        return engine;
+    }
+
+    /**
+     * Attaches the overlay's engine to {@code flutterView} and reports the time from this call
+     * to the first rendered frame to {@code onFirstFrame}.
+     */
+    static void attach(Context context, String overlayId, FlutterView flutterView, Runnable onFirstFrame) {
+        final long requestedAt = SystemClock.uptimeMillis();
+        final FlutterEngine engine = obtainEngine(context, overlayId);
+        if (engine == null) return;
+
+        engine.getRenderer().addIsDisplayingFlutterUiListener(new FlutterUiDisplayListener() {
+            @Override
+            public void onFlutterUiDisplayed() {
+                engine.getRenderer().removeIsDisplayingFlutterUiListener(this);
+                timeToFirstFrameMs = SystemClock.uptimeMillis() - requestedAt;
+                onFirstFrame.run();
+            }
+
+            @Override
+            public void onFlutterUiNoLongerDisplayed() {
+            }
+        });
+        flutterView.attachToFlutterEngine(engine);
+        engine.getLifecycleChannel().appIsResumed();
+    }
+
+    /**
+     * Detaches the engine from {@code flutterView}. When the overlay is closed its engine is
+     * released as well.
+     */
+    static void detach(String overlayId, FlutterView flutterView, boolean overlayClosed) {
+        flutterView.detachFromFlutterEngine();
+        if (overlayClosed) {
+            release(overlayId);
+        }
+    }
+
+    // Returns the engine to the spare slot unless the warm-up mode says to destroy it
+    private static void release(String overlayId) {
+        EngineHandle handle = engines.remove(overlayId);
+        if (handle == null) return;
+
+        FlutterEngineCache cache = FlutterEngineCache.getInstance();
+        cache.remove(handle.cacheId);
+        handle.engine.getLifecycleChannel().appIsPaused();
+        if (warmUpMode != MODE_LAZY && !cache.contains(ENGINE_ID)) {
+            cache.put(ENGINE_ID, handle.engine);
+        } else {
+            handle.engine.destroy();
+        }
+    }
+
+    /** Pauses or resumes the overlay isolate's rendering while its window is hidden. */
+    static void setVisible(String overlayId, boolean visible) {
+        EngineHandle handle = engines.get(overlayId);
+        if (handle == null) return;
+        if (visible) {
+            handle.engine.getLifecycleChannel().appIsResumed();
+        } else {
+            handle.engine.getLifecycleChannel().appIsPaused();
+        }
+    }
+
+    /** Forwards shared data to the overlay's Dart isolate, if its engine is running. */
+    static void sendMessage(String overlayId, String message) {
+        EngineHandle handle = engines.get(overlayId);
+        if (handle != null) {
+            handle.messageChannel.send(message);
+        }
+    }
+
+    /**
+     * Forwards a binary payload to the overlay's Dart isolate, if its engine is running.
+     * {@code payload} is a direct buffer holding the bytes up to its position; they are copied
+     * before this returns.
+     */
+    static void sendPayload(String overlayId, ByteBuffer payload) {
+        EngineHandle handle = engines.get(overlayId);
+        if (handle != null) {
+            handle.payloadChannel.send(payload);
+        }
+    }
+
+    static boolean hasSpareEngine() {
+        return FlutterEngineCache.getInstance().contains(ENGINE_ID);
+    }
+
+    /** Destroys the pre-warmed spare engine, if any, under memory pressure. */
+    static void releaseSpareEngine() {
+        FlutterEngineCache cache = FlutterEngineCache.getInstance();
+        FlutterEngine spare = cache.get(ENGINE_ID);
+        if (spare == null) return;
+        cache.remove(ENGINE_ID);
+        spare.destroy();
+    }
+
+    static int getActiveEngineCount() {
+        return engines.size();
+    }
+
+    static long getEngineStartupMs() {
+        return engineStartupMs;
+    }
+
+    static long getTimeToFirstFrameMs() {
+        return timeToFirstFrameMs;
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
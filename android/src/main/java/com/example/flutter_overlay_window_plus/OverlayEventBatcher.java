@@ -0,0 +1,369 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import io.flutter.plugin.common.EventChannel;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Packs overlay events into one binary payload per display frame.
+ *
+ * Events are written into a reusable buffer without allocating; once per frame the buffer is
+ * copied into a single {@code byte[]} and sent to the event sink. Decoded on the Dart side by
+ * {@code decodeOverlayEvents}. Every event gets the next sequence number; the records of a
+ * batch are consecutive, so only the first sequence number is sent. Layout, little-endian:
+ * <pre>
+ * batch:  u8 version, u16 recordCount, i64 firstSequence, record*
+ * record: u8 type, u8 idLength, idLength bytes (UTF-8 overlay id), u8 valueCount, valueCount x i64
+ * </pre>
+ *
+ * A batch that reaches the u16 record limit is sealed and sent with the next flush, which always
+ * runs on the main thread, whatever thread added the events.
+ *
+ * While no listener is attached, events are kept in a bounded replay buffer, oldest evicted
+ * first, and sent as one batch when a listener attaches. If any were evicted, the replay ends
+ * with an EVENTS_DROPPED event carrying the number lost; the gap also shows in the sequence
+ * numbers.
+ */
+class OverlayEventBatcher implements Choreographer.FrameCallback {
+    static final int VERSION = 2;
+    static final int DEFAULT_REPLAY_CAPACITY = 64;
+    // Keeps a replay within one batch's u16 record count
+    static final int MAX_REPLAY_CAPACITY = 4096;
+
+    // Event type codes, mirrored in lib/src/overlay_event_codec.dart
+    static final int SHOWN = 1;
+    static final int HIDDEN = 2;
+    static final int MOVED = 3;
+    static final int CLOSED = 4;
+    static final int FIRST_FRAME = 5;
+    static final int POSITION = 6;
+    static final int FRAME_STATS = 7;
+    static final int EVENTS_DROPPED = 8;
+    static final int POWER_MODE = 9;
+    static final int RESOURCES_SHED = 10;
+    static final int RESOURCES_RESTORED = 11;
+    static final int DISPLAY_CHANGED = 12;
+    static final int FRAME_RATE = 13;
+
+    private static final int BATCH_HEADER = 1 + 2 + 8;
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MAX_RECORD_HEADER = 3 + 255;
+    // Overlay id of service-wide events
+    static final byte[] NO_OVERLAY = new byte[0];
+
+    // Created on first use, so the batcher can be constructed on a plain JVM
+    private Handler mainHandler;
+    private final Runnable postFrame = () -> Choreographer.getInstance().postFrameCallback(this);
+
+    private ByteBuffer buffer = newBuffer(INITIAL_CAPACITY);
+    private int recordCount = 0;
+    // Full batches waiting for the next flush, oldest first
+    private final List<byte[]> sealed = new ArrayList<>();
+    private boolean frameScheduled = false;
+    private EventChannel.EventSink sink;
+
+    private long nextSequence = 0;
+    private long batchFirstSequence = 0;
+    // Buffer position of the record being written
+    private int recordStart = BATCH_HEADER;
+
+    // Ring of encoded records kept while no listener is attached
+    private byte[][] replay = new byte[DEFAULT_REPLAY_CAPACITY][];
+    private long[] replaySequences = new long[DEFAULT_REPLAY_CAPACITY];
+    private int replayHead = 0;
+    private int replayCount = 0;
+    private long droppedSinceListener = 0;
+
+    // Counters
+    private long eventsEmitted = 0;
+    private long batchesSent = 0;
+    private long eventsDropped = 0;
+    private long eventsReplayed = 0;
+
+    /**
+     * Attaches or detaches the listener. Events still pending for a detached listener move to
+     * the replay buffer; an attached listener is sent the replay buffer right away.
+     */
+    synchronized void setSink(EventChannel.EventSink sink) {
+        if (sink == null) {
+            stashPending();
+        }
+        this.sink = sink;
+        if (sink != null) {
+            replay();
+        }
+    }
+
+    /** Keeps up to {@code capacity} events while no listener is attached; 0 drops them. */
+    synchronized void setReplayCapacity(int capacity) {
+        capacity = Math.max(0, Math.min(capacity, MAX_REPLAY_CAPACITY));
+        int keep = Math.min(replayCount, capacity);
+        int evicted = replayCount - keep;
+        byte[][] records = new byte[capacity][];
+        long[] sequences = new long[capacity];
+        for (int i = 0; i < keep; i++) {
+            int slot = (replayHead + evicted + i) % replay.length;
+            records[i] = replay[slot];
+            sequences[i] = replaySequences[slot];
+        }
+        replay = records;
+        replaySequences = sequences;
+        replayHead = 0;
+        replayCount = keep;
+        drop(evicted);
+    }
+
+    synchronized void add(int type, byte[] overlayId) {
+        if (!begin(type, overlayId, 0)) return;
+        end();
+    }
+
+    synchronized void add(int type, byte[] overlayId, long value) {
+        if (!begin(type, overlayId, 1)) return;
+        buffer.putLong(value);
+        end();
+    }
+
+    synchronized void add(int type, byte[] overlayId, long value0, long value1) {
+        if (!begin(type, overlayId, 2)) return;
+        buffer.putLong(value0);
+        buffer.putLong(value1);
+        end();
+    }
+
+    /**
+     * For the rare events with more values than the fixed overloads take, e.g. summaries and
+     * service-wide reports. The varargs array is allocated per call, so hot paths use the
+     * fixed overloads.
+     */
+    synchronized void add(int type, byte[] overlayId, long... values) {
+        if (!begin(type, overlayId, values.length)) return;
+        for (long value : values) {
+            buffer.putLong(value);
+        }
+        end();
+    }
+
+    // Starts a record of valueCount values, which the caller writes before end(). Returns false,
+    // and writes nothing, when the event is dropped because no listener is attached and replay
+    // is disabled.
+    private boolean begin(int type, byte[] overlayId, int valueCount) {
+        if (sink == null && replay.length == 0) {
+            nextSequence++;
+            drop(1);
+            return false;
+        }
+
+        if (recordCount == 0) {
+            batchFirstSequence = nextSequence;
+        }
+        recordStart = buffer.position();
+        int idLength = Math.min(overlayId.length, 255);
+        ensureCapacity(MAX_RECORD_HEADER + valueCount * 8);
+        buffer.put((byte) type);
+        buffer.put((byte) idLength);
+        buffer.put(overlayId, 0, idLength);
+        buffer.put((byte) valueCount);
+        return true;
+    }
+
+    private void end() {
+        nextSequence++;
+        eventsEmitted++;
+        if (sink == null) {
+            stash(buffer.array(), recordStart, buffer.position(), nextSequence - 1);
+            buffer.position(recordStart);
+            return;
+        }
+
+        recordCount++;
+        if (recordCount == 0xFFFF) {
+            // recordCount is a u16. Sent by the scheduled flush: this may not be the main thread
+            sealed.add(takeBatch());
+        }
+        scheduleFlush();
+    }
+
+    // Overridden by the JVM benchmarks, which flush explicitly
+    void scheduleFlush() {
+        if (frameScheduled) return;
+        frameScheduled = true;
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            Choreographer.getInstance().postFrameCallback(this);
+        } else {
+            if (mainHandler == null) {
+                mainHandler = new Handler(Looper.getMainLooper());
+            }
+            mainHandler.post(postFrame);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        flush();
+    }
+
+    /** Sends all pending events now. Main thread. */
+    synchronized void flush() {
+        frameScheduled = false;
+        if (recordCount > 0) {
+            sealed.add(takeBatch());
+        }
+        if (sealed.isEmpty()) return;
+
+        for (byte[] batch : sealed) {
+            if (sink != null) {
+                batchesSent++;
+                long start = OverlayMetrics.start();
+                sink.success(batch);
+                OverlayMetrics.recordEvent(OverlayMetrics.EVENT_BATCH, start);
+            }
+        }
+        sealed.clear();
+    }
+
+    // Copies out the pending records as one batch and starts the next
+    private byte[] takeBatch() {
+        buffer.putShort(1, (short) recordCount);
+        buffer.putLong(3, batchFirstSequence);
+        byte[] batch = Arrays.copyOf(buffer.array(), buffer.position());
+        reset();
+        return batch;
+    }
+
+    private void reset() {
+        buffer.clear();
+        buffer.put((byte) VERSION);
+        buffer.putShort((short) 0);
+        buffer.putLong(0);
+        recordCount = 0;
+    }
+
+    private void stash(byte[] bytes, int from, int to, long sequence) {
+        int slot;
+        if (replayCount == replay.length) {
+            slot = replayHead;
+            replayHead = (replayHead + 1) % replay.length;
+            drop(1);
+        } else {
+            slot = (replayHead + replayCount) % replay.length;
+            replayCount++;
+        }
+        replay[slot] = Arrays.copyOfRange(bytes, from, to);
+        replaySequences[slot] = sequence;
+    }
+
+    // Moves the records not yet flushed, sealed batches first, into the replay buffer
+    private void stashPending() {
+        if (recordCount > 0) {
+            sealed.add(takeBatch());
+        }
+        for (byte[] batch : sealed) {
+            ByteBuffer header = ByteBuffer.wrap(batch).order(ByteOrder.LITTLE_ENDIAN);
+            stashBatch(batch, header.getShort(1) & 0xFFFF, header.getLong(3));
+        }
+        sealed.clear();
+    }
+
+    private void stashBatch(byte[] bytes, int count, long firstSequence) {
+        if (replay.length == 0) {
+            drop(count);
+            return;
+        }
+        int offset = BATCH_HEADER;
+        for (int i = 0; i < count; i++) {
+            int idLength = bytes[offset + 1] & 0xFF;
+            int valueCount = bytes[offset + 2 + idLength] & 0xFF;
+            int end = offset + 3 + idLength + valueCount * 8;
+            stash(bytes, offset, end, firstSequence + i);
+            offset = end;
+        }
+    }
+
+    // Sends the replay buffer, and how many events were dropped, as one batch
+    private void replay() {
+        if (replayCount == 0 && droppedSinceListener == 0) return;
+
+        // Nothing is pending while detached, so the replay starts a new batch
+        batchFirstSequence = replayCount > 0 ? replaySequences[replayHead] : nextSequence;
+        for (int i = 0; i < replayCount; i++) {
+            int slot = (replayHead + i) % replay.length;
+            ensureCapacity(replay[slot].length);
+            buffer.put(replay[slot]);
+            replay[slot] = null;
+            recordCount++;
+        }
+        eventsReplayed += replayCount;
+        replayHead = 0;
+        replayCount = 0;
+
+        if (droppedSinceListener > 0) {
+            long dropped = droppedSinceListener;
+            droppedSinceListener = 0;
+            add(EVENTS_DROPPED, NO_OVERLAY, dropped);
+        }
+        flush();
+    }
+
+    private void drop(long count) {
+        eventsDropped += count;
+        droppedSinceListener += count;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() >= bytes) return;
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+        ByteBuffer larger = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+
+    /**
+     * Shrinks a buffer grown by a burst back to its initial size, under memory pressure.
+     * Returns the bytes freed.
+     */
+    synchronized long trimMemory() {
+        int capacity = buffer.capacity();
+        if (capacity <= INITIAL_CAPACITY || buffer.position() > INITIAL_CAPACITY) return 0;
+        ByteBuffer smaller = ByteBuffer.allocate(INITIAL_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        smaller.put(buffer);
+        buffer = smaller;
+        return capacity - INITIAL_CAPACITY;
+    }
+
+    private static ByteBuffer newBuffer(int capacity) {
+        ByteBuffer buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) VERSION);
+        buffer.putShort((short) 0);
+        buffer.putLong(0);
+        return buffer;
+    }
+
+    synchronized long getEventsEmitted() {
+        return eventsEmitted;
+    }
+
+    synchronized long getBatchesSent() {
+        return batchesSent;
+    }
+
+    synchronized long getEventsDropped() {
+        return eventsDropped;
+    }
+
+    synchronized long getEventsReplayed() {
+        return eventsReplayed;
+    }
+
+    synchronized int getEventsBuffered() {
+        return replayCount;
+    }
+}
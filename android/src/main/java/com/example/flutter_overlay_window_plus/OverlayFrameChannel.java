@@ -0,0 +1,245 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Triple-buffered channel of raw frames into one overlay, written by one producer thread at a
+ * time and shown on the main thread.
+ *
+ * Frames are copied straight from the incoming buffer into one of three bitmaps, which trade
+ * roles through one atomic slot: the producer fills its back bitmap and swaps it with the ready
+ * one, and the main thread swaps the ready one with the one on screen and draws it as-is, so the
+ * main thread never copies pixels. The producer holds a lock while it copies only so that
+ * {@link #release()} and {@link #trimMemory()} never free a bitmap under it. A frame replaced
+ * before it was shown counts as dropped. A new frame is signalled with at most one main-thread
+ * post until it is taken; while suspended the latest frame waits. The shown frame rate is sent
+ * once per second as FRAME_RATE events while frames arrive. Frame messages, little-endian:
+ * <pre>
+ * u8 version, u8 format (0 RGBA_8888, premultiplied), u16 width, u16 height,
+ * u8 idLength, idLength bytes (UTF-8 overlay id, empty for the default), width x height pixels
+ * </pre>
+ */
+final class OverlayFrameChannel {
+    static final int VERSION = 1;
+    static final int FORMAT_RGBA_8888 = 0;
+    private static final int HEADER = 1 + 1 + 2 + 2 + 1;
+    private static final long REPORT_INTERVAL_NANOS = 1_000_000_000L;
+
+    // The ready slot's index is in the low bits; DIRTY is set while it holds an unshown frame
+    private static final int INDEX_MASK = 3;
+    private static final int DIRTY = 4;
+
+    /** Receives each frame to show on the main thread; the bitmap stays valid until the next. */
+    interface Consumer {
+        void onFrame(Bitmap frame);
+    }
+
+    private final byte[] overlayId;
+    private final Bitmap[] bitmaps = new Bitmap[3];
+    private final AtomicInteger ready = new AtomicInteger(1);
+    private final AtomicBoolean signalled = new AtomicBoolean();
+    // Guards the bitmaps against being freed during a copy, and released
+    private final Object bitmapLock = new Object();
+    private boolean released = false;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable takeFrame = this::takeFrame;
+    // Producer thread only
+    private int back = 0;
+    // Main thread only
+    private int front = 2;
+    private boolean hasFrame = false;
+    private boolean suspended = false;
+    private Consumer consumer;
+    private long reportStartNanos = 0;
+    private long reportShown = 0;
+    private long reportDroppedBase = 0;
+    private long frameRate = 0;
+
+    // Counters, each written by one thread
+    private volatile long received = 0;
+    private volatile long rejected = 0;
+    private volatile long dropped = 0;
+    private long shown = 0;
+
+    OverlayFrameChannel(byte[] overlayId) {
+        this.overlayId = overlayId;
+    }
+
+    /** Returns the overlay id of a frame message, or null if it is not one this version reads. */
+    static String readOverlayId(ByteBuffer message) {
+        int start = message.position();
+        if (message.remaining() < HEADER || message.get(start) != VERSION) return null;
+        int idLength = message.get(start + 6) & 0xFF;
+        if (message.remaining() < HEADER + idLength) return null;
+        byte[] id = new byte[idLength];
+        for (int i = 0; i < idLength; i++) {
+            id[i] = message.get(start + HEADER + i);
+        }
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies the frame in {@code message} into the back bitmap and publishes it. Producer thread;
+     * returns false if the frame is malformed or in an unknown format.
+     */
+    boolean write(ByteBuffer message) {
+        message.order(ByteOrder.LITTLE_ENDIAN);
+        int start = message.position();
+        int format = message.get(start + 1) & 0xFF;
+        int width = message.getShort(start + 2) & 0xFFFF;
+        int height = message.getShort(start + 4) & 0xFFFF;
+        int pixelsStart = start + HEADER + (message.get(start + 6) & 0xFF);
+        if (format != FORMAT_RGBA_8888 || width == 0 || height == 0
+                || message.limit() - pixelsStart < (long) width * height * 4) {
+            rejected++;
+            return false;
+        }
+
+        synchronized (bitmapLock) {
+            if (released) {
+                rejected++;
+                return false;
+            }
+            Bitmap bitmap = bitmaps[back];
+            if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+                bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                bitmaps[back] = bitmap;
+            }
+            message.position(pixelsStart);
+            bitmap.copyPixelsFromBuffer(message);
+            received++;
+
+            int previous = ready.getAndSet(back | DIRTY);
+            if ((previous & DIRTY) != 0) {
+                dropped++;
+            }
+            back = previous & INDEX_MASK;
+        }
+        if (signalled.compareAndSet(false, true)) {
+            mainHandler.post(takeFrame);
+        }
+        return true;
+    }
+
+    void setConsumer(Consumer consumer) {
+        this.consumer = consumer;
+    }
+
+    /** The frame on screen, or null before the first one; for views rebuilt in the meantime. */
+    Bitmap getShownFrame() {
+        return hasFrame ? bitmaps[front] : null;
+    }
+
+    /** Holds back frames while nobody can see the overlay; the latest is shown on resume. */
+    void setSuspended(boolean suspend) {
+        if (suspended == suspend) return;
+        suspended = suspend;
+        if (!suspend && signalled.get()) {
+            takeFrame();
+        }
+    }
+
+    private void takeFrame() {
+        // Left signalled while suspended, so the producer does not post again
+        if (suspended) return;
+        signalled.set(false);
+        if ((ready.get() & DIRTY) == 0) return;
+
+        int previous = ready.getAndSet(front);
+        front = previous & INDEX_MASK;
+        hasFrame = true;
+        shown++;
+        report();
+        if (consumer != null) {
+            consumer.onFrame(bitmaps[front]);
+        }
+    }
+
+    private void report() {
+        long now = System.nanoTime();
+        if (reportStartNanos == 0 || now - reportStartNanos > 2 * REPORT_INTERVAL_NANOS) {
+            // First frame, or frames stopped for a while: start a new interval
+            reportStartNanos = now;
+            reportShown = 0;
+            reportDroppedBase = dropped;
+            return;
+        }
+        reportShown++;
+        long elapsed = now - reportStartNanos;
+        if (elapsed < REPORT_INTERVAL_NANOS) return;
+
+        long droppedFrames = dropped;
+        frameRate = Math.round(reportShown * 1e9 / elapsed);
+        OverlayService.events.add(OverlayEventBatcher.FRAME_RATE, overlayId, frameRate,
+            droppedFrames - reportDroppedBase);
+        reportStartNanos = now;
+        reportShown = 0;
+        reportDroppedBase = droppedFrames;
+    }
+
+    /**
+     * Stops showing frames and frees the bitmaps once the overlay is closed; later frames are
+     * rejected. Main thread, after the frame's view was removed.
+     */
+    void release() {
+        consumer = null;
+        mainHandler.removeCallbacks(takeFrame);
+        synchronized (bitmapLock) {
+            released = true;
+            freeBitmaps();
+        }
+    }
+
+    /**
+     * Frees the bitmaps of an overlay whose view was shed under memory pressure; the next frame
+     * allocates them again. Returns the bytes freed. Main thread.
+     */
+    long trimMemory() {
+        synchronized (bitmapLock) {
+            return freeBitmaps();
+        }
+    }
+
+    // Called with bitmapLock held. The shown and any unshown frame go with their bitmaps.
+    private long freeBitmaps() {
+        long bytes = 0;
+        for (int i = 0; i < bitmaps.length; i++) {
+            if (bitmaps[i] != null) {
+                bytes += bitmaps[i].getAllocationByteCount();
+                bitmaps[i].recycle();
+                bitmaps[i] = null;
+            }
+        }
+        ready.set(ready.get() & INDEX_MASK);
+        hasFrame = false;
+        return bytes;
+    }
+
+    long getReceived() {
+        return received;
+    }
+
+    long getShown() {
+        return shown;
+    }
+
+    long getDropped() {
+        return dropped;
+    }
+
+    long getRejected() {
+        return rejected;
+    }
+
+    /** Frames shown per second over the last full interval, 0 before one completed. */
+    long getFrameRate() {
+        return frameRate;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.View;
+
+/**
+ * Draws the latest frame of an {@link OverlayFrameChannel}, scaled to fit and centered.
+ *
+ * The channel reuses its bitmaps, so a new frame may arrive in the bitmap already shown; each
+ * frame only invalidates the view and nothing is allocated per frame.
+ */
+final class OverlayFrameView extends View {
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect destination = new Rect();
+    private Bitmap frame;
+
+    OverlayFrameView(Context context) {
+        super(context);
+    }
+
+    void setFrame(Bitmap frame) {
+        this.frame = frame;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (frame == null) return;
+        int width = getWidth();
+        int height = getHeight();
+        float scale = Math.min((float) width / frame.getWidth(), (float) height / frame.getHeight());
+        int frameWidth = Math.round(frame.getWidth() * scale);
+        int frameHeight = Math.round(frame.getHeight() * scale);
+        int left = (width - frameWidth) / 2;
+        int top = (height - frameHeight) / 2;
+        destination.set(left, top, left + frameWidth, top + frameHeight);
+        canvas.drawBitmap(frame, null, destination, paint);
+    }
+}
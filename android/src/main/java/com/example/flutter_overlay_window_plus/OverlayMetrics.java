@@ -0,0 +1,153 @@
+package com.example.flutter_overlay_window_plus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Opt-in latency histograms for method-channel calls, window operations and event emission.
+ *
+ * Call sites bracket the measured work with {@link #start()} and one of the {@code record}
+ * methods. While disabled, {@code start()} returns 0 and recording returns immediately, so the
+ * instrumentation costs one volatile read per call site. Recording is lock-free and safe from
+ * any thread.
+ */
+final class OverlayMetrics {
+    // Upper bounds of the histogram buckets; a last bucket holds everything slower
+    static final long[] BUCKET_BOUNDS_MICROS = {50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000};
+
+    // Window operations
+    static final String ADD_VIEW = "addView";
+    static final String UPDATE_VIEW_LAYOUT = "updateViewLayout";
+    static final String REMOVE_VIEW = "removeView";
+
+    // Event emission
+    static final String EVENT_BATCH = "eventBatch";
+
+    // Service requests, from the plugin's request to the overlay being shown
+    static final String SHOW_INTENT = "showIntent";
+    static final String SHOW_BOUND = "showBound";
+
+    private static volatile boolean enabled = false;
+    // System.nanoTime(), like SystemClock.uptimeMillis() not counting deep sleep
+    private static volatile long resetAtNanos = System.nanoTime();
+
+    private static final ConcurrentHashMap<String, Histogram> methods = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Histogram> window = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Histogram> events = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Histogram> service = new ConcurrentHashMap<>();
+
+    private OverlayMetrics() {
+    }
+
+    static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Start timestamp for a measurement, or 0 when metrics are disabled. */
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    static void recordMethod(String method, long start) {
+        if (start != 0) record(methods, method, System.nanoTime() - start);
+    }
+
+    static void recordWindow(String operation, long start) {
+        if (start != 0) record(window, operation, System.nanoTime() - start);
+    }
+
+    static void recordEvent(String name, long start) {
+        if (start != 0) record(events, name, System.nanoTime() - start);
+    }
+
+    static void recordService(String name, long nanos) {
+        if (enabled) record(service, name, nanos);
+    }
+
+    private static void record(ConcurrentHashMap<String, Histogram> histograms, String name, long nanos) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new Histogram();
+            Histogram existing = histograms.putIfAbsent(name, histogram);
+            if (existing != null) histogram = existing;
+        }
+        histogram.record(nanos);
+    }
+
+    static void reset() {
+        methods.clear();
+        window.clear();
+        events.clear();
+        service.clear();
+        resetAtNanos = System.nanoTime();
+    }
+
+    static Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("elapsedMs", (System.nanoTime() - resetAtNanos) / 1_000_000);
+        List<Long> bounds = new ArrayList<>();
+        for (long bound : BUCKET_BOUNDS_MICROS) {
+            bounds.add(bound);
+        }
+        metrics.put("bucketBoundsMicros", bounds);
+        metrics.put("methods", toMap(methods));
+        metrics.put("window", toMap(window));
+        metrics.put("events", toMap(events));
+        metrics.put("service", toMap(service));
+        return metrics;
+    }
+
+    private static Map<String, Object> toMap(Map<String, Histogram> histograms) {
+        Map<String, Object> map = new HashMap<>();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            map.put(entry.getKey(), entry.getValue().toMap());
+        }
+        return map;
+    }
+
+    private static final class Histogram {
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MICROS.length + 1);
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            long micros = nanos / 1000;
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MICROS.length && micros >= BUCKET_BOUNDS_MICROS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("count", count.get());
+            map.put("totalMicros", totalNanos.get() / 1000);
+            map.put("maxMicros", maxNanos.get() / 1000);
+            List<Long> counts = new ArrayList<>();
+            for (int i = 0; i < buckets.length(); i++) {
+                counts.add(buckets.get(i));
+            }
+            map.put("buckets", counts);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.core.app.NotificationCompat;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The overlay service's foreground notification.
+ *
+ * The launch intent, PendingIntent and builder are created once and reused for every update.
+ * Updates are rate-limited to a per-second budget, since the system drops excess ones anyway;
+ * updates over budget are coalesced and the latest content is posted as soon as the budget
+ * allows. Notifications are built and posted on the {@link OverlayWorker}, except for
+ * {@code startForeground}, which the system needs promptly and gets synchronously. Must be
+ * used from the main thread.
+ */
+final class OverlayNotificationController {
+    private static final String DEFAULT_TITLE = "Overlay Active";
+    private static final String DEFAULT_CONTENT = "Tap to open the app";
+
+    private static volatile long minIntervalNanos = 1_000_000_000L / 5;
+    private static volatile boolean mirrorSharedData = false;
+
+    private final Service service;
+    private final OverlayWorker worker;
+    private final NotificationManager notificationManager;
+    private final int notificationId;
+    private final NotificationCompat.Builder builder;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable postPending = this::postPending;
+
+    private String title = DEFAULT_TITLE;
+    private String content = DEFAULT_CONTENT;
+    private int visibility = NotificationCompat.VISIBILITY_SECRET;
+    private boolean dirty = false;
+    private boolean postScheduled = false;
+    private long lastPostNanos = 0;
+    // Incremented per post and on cancel; worker posts for older content are dropped. Guarded
+    // by postLock, which the worker holds from its check through notify()
+    private final Object postLock = new Object();
+    private long postGeneration = 0;
+
+    // Counters
+    private long posted = 0;
+    private long coalesced = 0;
+    private long skippedIdentical = 0;
+
+    OverlayNotificationController(Service service, OverlayWorker worker, String channelId, int notificationId) {
+        this.service = service;
+        this.worker = worker;
+        this.notificationManager = (NotificationManager) service.getSystemService(Context.NOTIFICATION_SERVICE);
+        this.notificationId = notificationId;
+
+        builder = new NotificationCompat.Builder(service, channelId)
+            .setSmallIcon(android.R.drawable.ic_dialog_info)
+            .setPriority(NotificationCompat.PRIORITY_LOW)
+            .setOngoing(true)
+            .setOnlyAlertOnce(true)
+            .setShowWhen(false);
+
+        // Resolving the launch intent is a PackageManager call, so it happens on the worker.
+        // Apps without a launcher activity get a notification that opens nothing.
+        worker.post(() -> {
+            Intent launchIntent = service.getPackageManager().getLaunchIntentForPackage(service.getPackageName());
+            if (launchIntent == null) return;
+            PendingIntent contentIntent = PendingIntent.getActivity(
+                service, 0, launchIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+            );
+            synchronized (builder) {
+                builder.setContentIntent(contentIntent);
+            }
+            worker.postToMain(this::onContentIntentReady);
+        });
+    }
+
+    // A notification posted before the launch intent was resolved does not open the app yet
+    private void onContentIntentReady() {
+        if (posted > 0 && !dirty) {
+            markDirty();
+        }
+    }
+
+    /** Limits notification updates to {@code maxPerSecond}; optionally mirrors shareData text. */
+    static void configure(int maxPerSecond, boolean mirror) {
+        minIntervalNanos = 1_000_000_000L / Math.max(1, maxPerSecond);
+        mirrorSharedData = mirror;
+    }
+
+    static boolean isMirroringSharedData() {
+        return mirrorSharedData;
+    }
+
+    /** Maps a NotificationVisibility index from Dart to a NotificationCompat visibility. */
+    static int getVisibility(int visibilityIndex) {
+        switch (visibilityIndex) {
+            case 0: return NotificationCompat.VISIBILITY_PUBLIC;
+            case 2: return NotificationCompat.VISIBILITY_PRIVATE;
+            default: return NotificationCompat.VISIBILITY_SECRET;
+        }
+    }
+
+    /** Promotes the service to the foreground with the given content, bypassing the rate limit. */
+    void startForeground(String title, String content, int visibility) {
+        this.title = title != null ? title : DEFAULT_TITLE;
+        this.content = content != null ? content : DEFAULT_CONTENT;
+        this.visibility = visibility;
+        startForeground();
+    }
+
+    /** Promotes the service to the foreground with the current content, bypassing the rate limit. */
+    void startForeground() {
+        handler.removeCallbacks(postPending);
+        postScheduled = false;
+        dirty = false;
+        lastPostNanos = System.nanoTime();
+        posted++;
+        synchronized (postLock) {
+            postGeneration++;
+        }
+        service.startForeground(notificationId, build(title, content, visibility));
+    }
+
+    /** Writes the current title, content and visibility for {@link OverlayStateStore}. */
+    void writeState(DataOutput out) throws IOException {
+        out.writeInt(visibility);
+        OverlayStateStore.writeString(out, title);
+        OverlayStateStore.writeString(out, content);
+    }
+
+    /** Promotes the service to the foreground with state written by {@link #writeState}. */
+    void restoreState(DataInputStream in) throws IOException {
+        int visibility = in.readInt();
+        String title = OverlayStateStore.readString(in);
+        String content = OverlayStateStore.readString(in);
+        startForeground(title, content, visibility);
+    }
+
+    void setVisibility(int visibility) {
+        if (this.visibility == visibility) return;
+        this.visibility = visibility;
+        markDirty();
+    }
+
+    /** Shows {@code title} and {@code content}; null falls back to the default text. */
+    void update(String title, String content) {
+        title = title != null ? title : DEFAULT_TITLE;
+        content = content != null ? content : DEFAULT_CONTENT;
+        if (title.equals(this.title) && content.equals(this.content)) {
+            skippedIdentical++;
+            return;
+        }
+        this.title = title;
+        this.content = content;
+        markDirty();
+    }
+
+    void updateContent(String content) {
+        update(title, content);
+    }
+
+    void cancel() {
+        handler.removeCallbacks(postPending);
+        postScheduled = false;
+        dirty = false;
+        // Once this returns, no worker post can notify any more
+        synchronized (postLock) {
+            postGeneration++;
+        }
+    }
+
+    private void markDirty() {
+        if (dirty) coalesced++;
+        dirty = true;
+
+        long wait = lastPostNanos + minIntervalNanos - System.nanoTime();
+        if (wait <= 0) {
+            postPending();
+        } else if (!postScheduled) {
+            postScheduled = true;
+            handler.postDelayed(postPending, wait / 1_000_000 + 1);
+        }
+    }
+
+    private void postPending() {
+        handler.removeCallbacks(postPending);
+        postScheduled = false;
+        if (!dirty) return;
+        dirty = false;
+        lastPostNanos = System.nanoTime();
+        posted++;
+
+        final long generation;
+        synchronized (postLock) {
+            generation = ++postGeneration;
+        }
+        final String title = this.title;
+        final String content = this.content;
+        final int visibility = this.visibility;
+        worker.post(() -> {
+            Notification notification = build(title, content, visibility);
+            synchronized (postLock) {
+                if (generation != postGeneration) return;
+                notificationManager.notify(notificationId, notification);
+            }
+        });
+    }
+
+    // Called on the main thread for startForeground and on the worker for updates
+    private Notification build(String title, String content, int visibility) {
+        synchronized (builder) {
+            return builder
+                .setContentTitle(title)
+                .setContentText(content)
+                .setVisibility(visibility)
+                .build();
+        }
+    }
+
+    long getPosted() {
+        return posted;
+    }
+
+    long getCoalesced() {
+        return coalesced;
+    }
+
+    long getSkippedIdentical() {
+        return skippedIdentical;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.flutter_overlay_window_plus;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only, typed view over a binary payload sent with {@code shareBinaryData}.
+ *
+ * Fields are read with absolute, little-endian gets straight from the incoming buffer, so no
+ * bytes are copied. Offsets are relative to the start of the payload. The buffer is owned by
+ * the Flutter messenger and is only valid for the duration of
+ * {@link Listener#onPayload(OverlayPayload)}; read what you need there and do not keep a
+ * reference to the payload.
+ */
+public final class OverlayPayload {
+
+    /** Receives binary payloads on the main thread. */
+    public interface Listener {
+        void onPayload(OverlayPayload payload);
+    }
+
+    private ByteBuffer buffer;
+    private String overlayId;
+
+    OverlayPayload() {
+    }
+
+    // buffer starts at the payload, e.g. a slice of the message after its overlay id
+    void bind(String overlayId, ByteBuffer buffer) {
+        this.overlayId = overlayId;
+        this.buffer = buffer;
+        if (buffer != null) {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /** Id of the overlay the payload was sent to. */
+    public String getOverlayId() {
+        return overlayId;
+    }
+
+    /** Number of bytes in the payload. */
+    public int size() {
+        return buffer != null ? buffer.limit() : 0;
+    }
+
+    public byte getInt8(int offset) {
+        return buffer.get(offset);
+    }
+
+    public int getUint8(int offset) {
+        return buffer.get(offset) & 0xFF;
+    }
+
+    public short getInt16(int offset) {
+        return buffer.getShort(offset);
+    }
+
+    public int getInt32(int offset) {
+        return buffer.getInt(offset);
+    }
+
+    public long getInt64(int offset) {
+        return buffer.getLong(offset);
+    }
+
+    public float getFloat32(int offset) {
+        return buffer.getFloat(offset);
+    }
+
+    public double getFloat64(int offset) {
+        return buffer.getDouble(offset);
+    }
+
+    /** Decodes {@code length} bytes of UTF-8 text. This allocates and should be used sparingly. */
+    public String getUtf8(int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the underlying buffer, positioned at the start of the payload. */
+    public ByteBuffer asByteBuffer() {
+        buffer.position(0);
+        return buffer;
+    }
+}
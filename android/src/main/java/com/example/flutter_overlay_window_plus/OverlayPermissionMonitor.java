@@ -0,0 +1,210 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.Manifest;
+import android.app.Activity;
+import android.app.AppOpsManager;
+import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.provider.Settings;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caches whether the app may draw overlays, so show calls need no binder round trip.
+ *
+ * The cached state is refreshed when the system reports a change of the overlay app op and
+ * whenever the plugin's activity resumes, e.g. back from the settings page. A permission request
+ * opens the settings page and completes once the user granted access, or returned to the
+ * activity without granting it. Must be used from the main thread.
+ */
+final class OverlayPermissionMonitor
+        implements AppOpsManager.OnOpChangedListener, Application.ActivityLifecycleCallbacks {
+
+    interface RequestCallback {
+        void onResult(boolean granted);
+    }
+
+    private final Context context;
+    private final AppOpsManager appOps;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<RequestCallback> pendingRequests = new ArrayList<>();
+    private boolean watching = false;
+    private Activity activity;
+    // Set once the activity paused for the settings page opened by a request
+    private boolean leftForSettings = false;
+    private volatile boolean granted;
+
+    // Counters
+    private long checks = 0;
+    private long cacheHits = 0;
+
+    OverlayPermissionMonitor(Context context) {
+        this.context = context;
+        this.appOps = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
+    }
+
+    void start() {
+        refresh();
+        if (watching || Build.VERSION.SDK_INT < Build.VERSION_CODES.M || appOps == null) return;
+        appOps.startWatchingMode(AppOpsManager.OPSTR_SYSTEM_ALERT_WINDOW,
+            context.getPackageName(), this);
+        watching = true;
+    }
+
+    void stop() {
+        setActivity(null);
+        if (watching) {
+            appOps.stopWatchingMode(this);
+            watching = false;
+        }
+        completeRequests(granted);
+    }
+
+    /** Follows the resumes of {@code activity}; null when the plugin is detached from it. */
+    void setActivity(Activity activity) {
+        if (this.activity == activity) return;
+        if (this.activity != null) {
+            this.activity.getApplication().unregisterActivityLifecycleCallbacks(this);
+        }
+        this.activity = activity;
+        leftForSettings = false;
+        if (activity != null) {
+            activity.getApplication().registerActivityLifecycleCallbacks(this);
+        }
+    }
+
+    /** The cached state, without a binder call. */
+    boolean isGranted() {
+        cacheHits++;
+        return granted;
+    }
+
+    /**
+     * Opens the overlay settings page unless access is already granted. {@code callback} gets
+     * the outcome once the user decided; concurrent requests share one settings page.
+     */
+    void request(RequestCallback callback) {
+        if (refresh()) {
+            callback.onResult(true);
+            return;
+        }
+        pendingRequests.add(callback);
+        if (pendingRequests.size() > 1) return;
+
+        Intent intent = new Intent(Settings.ACTION_MANAGE_OVERLAY_PERMISSION,
+            Uri.parse("package:" + context.getPackageName()));
+        if (activity != null) {
+            activity.startActivity(intent);
+        } else {
+            // Without an activity only a grant is noticed, through the app op listener
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            context.startActivity(intent);
+        }
+    }
+
+    // Queries the system; the only place the monitor checks the permission over binder
+    private boolean refresh() {
+        checks++;
+        granted = check(context);
+        return granted;
+    }
+
+    /**
+     * Checks the permission over binder, for engines that own no monitor. canDrawOverlays can
+     * lag behind the op on some releases, so a grant seen in either counts.
+     */
+    static boolean check(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M || Settings.canDrawOverlays(context)) {
+            return true;
+        }
+        AppOpsManager appOps = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
+        return appOps != null && isOpAllowed(context, appOps);
+    }
+
+    // Binder thread
+    @Override
+    public void onOpChanged(String op, String packageName) {
+        if (!context.getPackageName().equals(packageName)) return;
+        mainHandler.post(() -> {
+            // canDrawOverlays can lag behind the op on some releases, so read the op itself
+            checks++;
+            granted = isOpAllowed(context, appOps);
+            if (granted) {
+                completeRequests(true);
+            }
+        });
+    }
+
+    private static boolean isOpAllowed(Context context, AppOpsManager appOps) {
+        int mode = appOps.checkOpNoThrow(AppOpsManager.OPSTR_SYSTEM_ALERT_WINDOW,
+            Process.myUid(), context.getPackageName());
+        if (mode == AppOpsManager.MODE_DEFAULT) {
+            return context.checkSelfPermission(Manifest.permission.SYSTEM_ALERT_WINDOW)
+                == PackageManager.PERMISSION_GRANTED;
+        }
+        return mode == AppOpsManager.MODE_ALLOWED;
+    }
+
+    private void completeRequests(boolean result) {
+        leftForSettings = false;
+        if (pendingRequests.isEmpty()) return;
+        List<RequestCallback> callbacks = new ArrayList<>(pendingRequests);
+        pendingRequests.clear();
+        for (RequestCallback callback : callbacks) {
+            callback.onResult(result);
+        }
+    }
+
+    @Override
+    public void onActivityResumed(Activity resumed) {
+        if (resumed != activity) return;
+        refresh();
+        // Back from the settings page; whatever the user chose is final now
+        if (leftForSettings || granted) {
+            completeRequests(granted);
+        }
+    }
+
+    @Override
+    public void onActivityPaused(Activity paused) {
+        if (paused == activity && !pendingRequests.isEmpty()) {
+            leftForSettings = true;
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity created, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity started) {
+    }
+
+    @Override
+    public void onActivityStopped(Activity stopped) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity saved, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity destroyed) {
+    }
+
+    long getChecks() {
+        return checks;
+    }
+
+    long getCacheHits() {
+        return cacheHits;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.app.KeyguardManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.PowerManager;
+
+/**
+ * Tracks whether the overlays can be seen at all, i.e. the device is interactive and
+ * unlocked; app overlays are not drawn over the keyguard.
+ *
+ * Updated from the screen-off, screen-on and user-present broadcasts. While nobody can see the
+ * overlays the service is in low-power mode and its overlays hold back UI updates. Must be used
+ * from the main thread.
+ */
+final class OverlayPowerMonitor extends BroadcastReceiver {
+
+    interface Listener {
+        void onLowPowerChanged(boolean lowPower);
+    }
+
+    private final Context context;
+    private final PowerManager powerManager;
+    private final KeyguardManager keyguardManager;
+    private final Listener listener;
+    private boolean registered = false;
+    // Read by the static entry points from any thread
+    private volatile boolean lowPower = false;
+
+    // Counters
+    private long lowPowerEntries = 0;
+
+    OverlayPowerMonitor(Context context, Listener listener) {
+        this.context = context;
+        this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        this.keyguardManager = (KeyguardManager) context.getSystemService(Context.KEYGUARD_SERVICE);
+        this.listener = listener;
+    }
+
+    void start() {
+        if (registered) return;
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_USER_PRESENT);
+        context.registerReceiver(this, filter);
+        registered = true;
+        update();
+    }
+
+    void stop() {
+        if (!registered) return;
+        context.unregisterReceiver(this);
+        registered = false;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        update();
+    }
+
+    private void update() {
+        boolean low = !powerManager.isInteractive()
+            || (keyguardManager != null && keyguardManager.isKeyguardLocked());
+        if (low == lowPower) return;
+        lowPower = low;
+        if (low) lowPowerEntries++;
+        listener.onLowPowerChanged(low);
+    }
+
+    boolean isLowPower() {
+        return lowPower;
+    }
+
+    long getLowPowerEntries() {
+        return lowPowerEntries;
+    }
+}
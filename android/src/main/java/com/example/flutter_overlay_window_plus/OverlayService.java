@@ -1,272 +1,365 @@
 package com.example.flutter_overlay_window_plus;
 
-import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.app.Service;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.PackageManager;
-import android.graphics.Color;
-import android.graphics.PixelFormat;
+import android.content.res.Configuration;
+import android.os.Binder;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
-import android.view.Gravity;
-import android.view.LayoutInflater;
-import android.view.MotionEvent;
-import android.view.View;
+import android.view.Display;
 import android.view.WindowManager;
-import android.widget.Button;
-import android.widget.FrameLayout;
-import android.widget.RelativeLayout;
-import android.widget.TextView;
-import androidx.core.app.NotificationCompat;
 import io.flutter.plugin.common.EventChannel;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Foreground service hosting the overlay windows.
+ *
+ * Threading: lifecycle callbacks, the overlays and their views live on the main thread.
+ * Non-UI work such as notification posts, state file writes, text measurement and metrics
+ * snapshots runs on the service's {@link OverlayWorker}. Static entry points that change an
+ * overlay may be called from any thread and are posted to the main thread when needed;
+ * {@code shareData}, {@code getOverlayPosition} and the configuration setters are safe anywhere;
+ * {@code applyOverlayUpdates} and {@code getOverlayStats} return main-thread state and must be
+ * called there. {@code instance} is volatile and read once per call. Events go through the
+ * synchronized {@link OverlayEventBatcher}, which also guards the event sink.
+ */
 public class OverlayService extends Service {
     private static final String TAG = "OverlayService";
     private static final String CHANNEL_ID = "overlay_service_channel";
     private static final int NOTIFICATION_ID = 1;
+    public static final String DEFAULT_OVERLAY_ID = "default";
     
     private WindowManager windowManager;
-    private View overlayView;
-    private WindowManager.LayoutParams params;
-    private static EventChannel.EventSink eventSink;
-    private static OverlayService instance;
-    private TextView textView;
-    
-    // Overlay properties
-    private int overlayWidth = WindowManager.LayoutParams.MATCH_PARENT;
-    private int overlayHeight = WindowManager.LayoutParams.MATCH_PARENT;
-    private int alignment = Gravity.CENTER;
-    private int flag = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
-    private boolean enableDrag = false;
-    private int positionGravity = 0; // 0: none, 1: right, 2: left, 3: auto
-    
-    // Drag variables
-    private int initialX, initialY;
-    private float initialTouchX, initialTouchY;
-    private boolean isDragging = false;
-
-    private NotificationManager notificationManager;
+    private static volatile OverlayService instance;
+    private static volatile OverlayPayload.Listener payloadListener;
+    private static final OverlayPayload payload = new OverlayPayload();
+    // Main thread only
+    private static long binaryPayloads = 0;
+    // Overlay id of the last binary payload and its UTF-8 bytes, so repeated payloads for one
+    // overlay decode nothing; main thread only
+    private static byte[] lastPayloadIdBytes = new byte[0];
+    private static String lastPayloadId = DEFAULT_OVERLAY_ID;
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private static final Queue<OverlayConfig> pendingConfigs = new ConcurrentLinkedQueue<>();
+    // Describes displays while no service is running; main thread only
+    private static DisplayGeometryCache idleDisplays;
+
+    // Events are batched per frame into one binary payload
+    static final OverlayEventBatcher events = new OverlayEventBatcher();
+
+    // Live overlays keyed by overlay id; they share this service, its notification and engines.
+    // Written on the main thread only; concurrent so lookups such as getOverlayPosition work from any thread.
+    private final Map<String, OverlayWindow> overlays = new ConcurrentHashMap<>();
+
+    private OverlayWorker worker;
+    private OverlayNotificationController notifications;
+    private OverlayStateStore stateStore;
+    private OverlayPowerMonitor powerMonitor;
+    // How long the last sticky restart took to rebuild the overlays, -1 if there was none
+    private long restoreNanos = -1;
+
+    private final LocalBinder binder = new LocalBinder();
+
+    // Memory pressure tiers, from cheapest to most disruptive to undo
+    static final int SHED_CACHES = 1;
+    static final int SHED_HIDDEN_VIEWS = 2;
+    static final int SHED_ENGINES = 3;
+
+    // Counters for resources shed under memory pressure
+    private long memoryTrims = 0, memoryBytesShed = 0, hiddenViewsShed = 0, enginesShed = 0;
+
+    // Show latency per path: startService Intent (cold start) and direct call through the binder
+    private long intentShows = 0, intentShowNanos = 0;
+    private long boundShows = 0, boundShowNanos = 0;
+
+    // Geometry and window managers of the displays overlays are on
+    private DisplayGeometryCache displays;
+    private long overlaysRemapped = 0;
 
     @Override
     public void onCreate() {
         super.onCreate();
         instance = this;
         windowManager = (WindowManager) getSystemService(Context.WINDOW_SERVICE);
-        notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        displays = new DisplayGeometryCache(this, new DisplayGeometryCache.Listener() {
+            @Override
+            public void onGeometryChanged(DisplayGeometry previous, DisplayGeometry geometry) {
+                onDisplayGeometryChanged(previous, geometry);
+            }
+
+            @Override
+            public void onDisplayRemoved(int displayId) {
+                onDisplayGone(displayId);
+            }
+        });
+        displays.start();
         createNotificationChannel();
+        worker = new OverlayWorker();
+        notifications = new OverlayNotificationController(this, worker, CHANNEL_ID, NOTIFICATION_ID);
+        stateStore = new OverlayStateStore(this, worker, this::writeState);
+        powerMonitor = new OverlayPowerMonitor(this, this::onLowPowerChanged);
+        powerMonitor.start();
+    }
+
+    // Nobody can see the overlays while the screen is off or locked, so they hold back updates
+    private void onLowPowerChanged(boolean lowPower) {
+        for (OverlayWindow overlay : overlays.values()) {
+            overlay.setScreenOff(lowPower);
+        }
+        events.add(OverlayEventBatcher.POWER_MODE, OverlayEventBatcher.NO_OVERLAY, lowPower ? 1 : 0);
     }
 
     @Override
-    public int onStartCommand(Intent intent, int flags, int startId) {
-        // Immediately call startForeground to avoid ANR
-        startForeground(NOTIFICATION_ID, createNotification("Overlay Service", "Initializing..."));
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // Rotations also arrive through the display listener; this catches inset-only changes
+        displays.refresh();
+    }
 
+    // Rotated or resized: overlays on the display keep their relative place, one relayout each.
+    // A refresh rate change only reaches the overlays' frame monitors.
+    private void onDisplayGeometryChanged(DisplayGeometry previous, DisplayGeometry geometry) {
+        for (OverlayWindow overlay : overlays.values()) {
+            if (overlay.onDisplayGeometryChanged(previous, geometry)) {
+                overlaysRemapped++;
+            }
+        }
+        if (geometry.sameLayout(previous)) return;
+        events.add(OverlayEventBatcher.DISPLAY_CHANGED, OverlayEventBatcher.NO_OVERLAY,
+            geometry.displayId, geometry.width, geometry.height, geometry.rotation);
+    }
+
+    // Overlays on a removed display move to the default one
+    private void onDisplayGone(int displayId) {
+        for (OverlayWindow overlay : overlays.values()) {
+            if (overlay.displayId == displayId) {
+                overlay.moveToDisplay(Display.DEFAULT_DISPLAY);
+            }
+        }
+    }
+
+    /** Returns {@code displayId} if that display exists, otherwise the default display. */
+    int resolveDisplayId(int displayId) {
+        // Also caches the geometry, so the display's changes are followed from now on
+        if (displays.get(displayId) != null) {
+            return displayId;
+        }
+        Log.w(TAG, "Display " + displayId + " not found, using the default display");
+        return Display.DEFAULT_DISPLAY;
+    }
+
+    DisplayGeometry getDisplayGeometry(int displayId) {
+        DisplayGeometry geometry = displays.get(displayId);
+        return geometry != null ? geometry : displays.get(Display.DEFAULT_DISPLAY);
+    }
+
+    WindowManager getWindowManager(int displayId) {
+        WindowManager displayWindowManager = displays.getWindowManager(displayId);
+        return displayWindowManager != null ? displayWindowManager : windowManager;
+    }
+
+    /**
+     * Describes the displays overlays can be shown on, as maps of {@link DisplayGeometry}
+     * fields. Uses the running service's cache when there is one. Main thread only.
+     */
+    static List<Map<String, Object>> describeDisplays(Context context) {
+        OverlayService service = instance;
+        if (service != null) {
+            return service.displays.describeDisplays();
+        }
+        // Nobody keeps this cache current, so it is measured afresh, but its display contexts
+        // are created once
+        if (idleDisplays == null) {
+            idleDisplays = new DisplayGeometryCache(context.getApplicationContext(), null);
+        }
+        idleDisplays.clearGeometries();
+        return idleDisplays.describeDisplays();
+    }
+
+    OverlayWorker getWorker() {
+        return worker;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
         if (intent == null) {
+            // Restarted after the process was killed; the Dart app may not be running
+            if (!restoreState()) {
+                notifications.startForeground();
+                stopSelf();
+                return START_NOT_STICKY;
+            }
             return START_STICKY;
         }
 
         if ("CLOSE_OVERLAY".equals(intent.getAction())) {
+            notifications.startForeground();
             stopSelf();
             return START_NOT_STICKY;
         }
 
-        // Extract data from intent
-        overlayWidth = intent.getIntExtra("width", WindowManager.LayoutParams.MATCH_PARENT);
-        overlayHeight = intent.getIntExtra("height", WindowManager.LayoutParams.MATCH_PARENT);
-        alignment = getAlignment(intent.getIntExtra("alignment", 0));
-        flag = getFlag(intent.getIntExtra("flag", 1));
-        enableDrag = intent.getBooleanExtra("enableDrag", false);
-        positionGravity = intent.getIntExtra("positionGravity", 0);
-        
-        String overlayTitle = intent.getStringExtra("overlayTitle");
-        String overlayContent = intent.getStringExtra("overlayContent");
-        
-        int startX = intent.getIntExtra("startX", -1);
-        int startY = intent.getIntExtra("startY", -1);
+        // Immediately call startForeground to avoid ANR, already with the requested content
+        OverlayConfig config = pendingConfigs.poll();
+        if (config != null) {
+            notifications.startForeground(config.overlayTitle, config.overlayContent, config.visibility);
+        } else {
+            notifications.startForeground();
+        }
 
-        // Show the overlay view
-        showOverlay(overlayTitle, overlayContent, startX, startY);
+        // Configs queued by cold-start requests; several may arrive before the service starts
+        while (config != null) {
+            showOverlay(config, false);
+            config = pendingConfigs.poll();
+        }
+        return START_STICKY;
+    }
 
-        // Update the notification with the correct content
-        Notification updatedNotification = createNotification(overlayTitle, overlayContent);
-        notificationManager.notify(NOTIFICATION_ID, updatedNotification);
+    /**
+     * Binder handed to the plugin, so requests to a running service are plain method calls
+     * instead of startService round trips.
+     */
+    class LocalBinder extends Binder {
+        /** The service, or null once it has been destroyed. */
+        OverlayService getService() {
+            return instance == OverlayService.this ? OverlayService.this : null;
+        }
+    }
 
-        return START_STICKY;
+    /**
+     * Hands {@code config} to the service for its next start command. Used to cold-start the
+     * service, since the config itself does not travel in the start Intent.
+     */
+    static void enqueueConfig(OverlayConfig config) {
+        pendingConfigs.add(config);
     }
 
-    private void showOverlay(String title, String content, int startX, int startY) {
-        try {
-            // If an overlay view already exists, remove it first to prevent duplicates
-            if (overlayView != null && windowManager != null) {
-                try {
-                    windowManager.removeView(overlayView);
-                } catch (IllegalArgumentException e) {
-                    // This can happen if the view is already gone. Ignore.
-                    Log.w(TAG, "Tried to remove a view that was not attached: " + e.getMessage());
-                }
-            }
+    /** Withdraws a config queued by {@link #enqueueConfig} whose service start failed. */
+    static void dequeueConfig(OverlayConfig config) {
+        pendingConfigs.remove(config);
+    }
 
-            // Create overlay view
-            overlayView = createOverlayView(title, content);
-            
-            // Create window parameters
-            params = new WindowManager.LayoutParams(
-                overlayWidth,
-                overlayHeight,
-                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
-                flag,
-                PixelFormat.TRANSLUCENT
-            );
-            
-            // Set initial position
-            if (startX >= 0 && startY >= 0) {
-                params.x = startX;
-                params.y = startY;
+    /** Shows or updates the overlay described by {@code config}. Called directly by bound clients. */
+    void showOverlay(OverlayConfig config) {
+        showOverlay(config, true);
+    }
+
+    private void showOverlay(OverlayConfig config, boolean bound) {
+        OverlayWindow overlay = obtainOverlay(config.overlayId);
+        overlay.overlayWidth = config.width;
+        overlay.overlayHeight = config.height;
+        overlay.alignment = config.alignment;
+        overlay.flag = config.flag;
+        overlay.enableDrag = config.enableDrag;
+        overlay.flutterContent = config.flutterContent;
+        overlay.positionGravity = config.positionGravity;
+        overlay.snapAnimated = config.snapAnimated;
+        overlay.snapStiffness = config.snapStiffness;
+        overlay.snapDampingRatio = config.snapDampingRatio;
+        overlay.displayId = resolveDisplayId(config.displayId);
+
+        // Show the overlay view
+        overlay.show(config.overlayTitle, config.overlayContent, config.startX, config.startY);
+
+        // Update the notification with the correct content; unchanged content is not reposted
+        notifications.setVisibility(config.visibility);
+        notifications.update(config.overlayTitle, config.overlayContent);
+
+        if (config.requestedAtNanos > 0) {
+            long latency = SystemClock.elapsedRealtimeNanos() - config.requestedAtNanos;
+            if (bound) {
+                boundShows++;
+                boundShowNanos += latency;
+                OverlayMetrics.recordService(OverlayMetrics.SHOW_BOUND, latency);
             } else {
-                params.gravity = alignment;
+                intentShows++;
+                intentShowNanos += latency;
+                OverlayMetrics.recordService(OverlayMetrics.SHOW_INTENT, latency);
             }
-            
-            // Add overlay to window
-            windowManager.addView(overlayView, params);
-            
-            // Send event to Flutter
-            sendEvent("overlay_shown", null);
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error showing overlay: " + e.getMessage());
-        }
-    }
-
-    private View createOverlayView(String title, String content) {
-        // Use a RelativeLayout to easily position the close button
-        RelativeLayout layout = new RelativeLayout(this);
-        layout.setBackgroundColor(Color.parseColor("#80000000")); // Semi-transparent black
-
-        // Content TextView
-        textView = new TextView(this);
-        textView.setText(content != null ? content : title);
-        textView.setTextColor(Color.WHITE);
-        textView.setTextSize(16);
-        textView.setPadding(40, 40, 40, 40); // Increased padding
-        RelativeLayout.LayoutParams textParams = new RelativeLayout.LayoutParams(
-                RelativeLayout.LayoutParams.WRAP_CONTENT,
-                RelativeLayout.LayoutParams.WRAP_CONTENT);
-        textParams.addRule(RelativeLayout.CENTER_IN_PARENT, RelativeLayout.TRUE);
-        textView.setLayoutParams(textParams);
-
-        // Close Button
-        Button closeButton = new Button(this);
-        closeButton.setText("X");
-        closeButton.setTextColor(Color.WHITE);
-        closeButton.setBackgroundColor(Color.TRANSPARENT);
-        closeButton.setOnClickListener(v -> {
-            // Re-launch the app
-            Intent launchIntent = getPackageManager().getLaunchIntentForPackage(getPackageName());
-            if (launchIntent != null) {
-                launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                startActivity(launchIntent);
-            }
-            // Stop the service
-            stopSelf();
-        });
+        }
+    }
 
-        RelativeLayout.LayoutParams buttonParams = new RelativeLayout.LayoutParams(
-                RelativeLayout.LayoutParams.WRAP_CONTENT,
-                RelativeLayout.LayoutParams.WRAP_CONTENT);
-        buttonParams.addRule(RelativeLayout.ALIGN_PARENT_TOP);
-        buttonParams.addRule(RelativeLayout.ALIGN_PARENT_RIGHT);
-        closeButton.setLayoutParams(buttonParams);
-
-        layout.addView(textView);
-        layout.addView(closeButton);
-        
-        if (enableDrag) {
-            layout.setOnTouchListener(new View.OnTouchListener() {
-                @Override
-                public boolean onTouch(View v, MotionEvent event) {
-                    switch (event.getAction()) {
-                        case MotionEvent.ACTION_DOWN:
-                            initialX = params.x;
-                            initialY = params.y;
-                            initialTouchX = event.getRawX();
-                            initialTouchY = event.getRawY();
-                            isDragging = true;
-                            return true;
-                            
-                        case MotionEvent.ACTION_MOVE:
-                            if (isDragging) {
-                                params.x = initialX + (int) (event.getRawX() - initialTouchX);
-                                params.y = initialY + (int) (event.getRawY() - initialTouchY);
-                                windowManager.updateViewLayout(overlayView, params);
-                            }
-                            return true;
-                            
-                        case MotionEvent.ACTION_UP:
-                            isDragging = false;
-                            applyPositionGravity();
-                            sendEvent("overlay_moved", createPositionMap());
-                            return true;
-                    }
-                    return false;
-                }
-            });
+    /**
+     * Writes the notification and every overlay for {@link OverlayStateStore}:
+     * notification state, u16 overlayCount, (string overlayId, overlay state)*.
+     */
+    private void writeState(DataOutput out) throws IOException {
+        notifications.writeState(out);
+        out.writeShort(overlays.size());
+        for (OverlayWindow overlay : overlays.values()) {
+            OverlayStateStore.writeString(out, overlay.id);
+            overlay.writeState(out);
         }
-        
-        return layout;
     }
 
-    private void applyPositionGravity() {
-        if (positionGravity == 0) return; // none
-        
-        int screenWidth = getResources().getDisplayMetrics().widthPixels;
-        int overlayWidth = overlayView.getWidth();
-        
-        switch (positionGravity) {
-            case 1: // right
-                params.x = screenWidth - overlayWidth;
-                break;
-            case 2: // left
-                params.x = 0;
-                break;
-            case 3: // auto
-                if (params.x + overlayWidth / 2 > screenWidth / 2) {
-                    params.x = screenWidth - overlayWidth;
-                } else {
-                    params.x = 0;
-                }
-                break;
+    // Rebuilds the saved overlays in one pass; false if there was nothing to restore
+    private boolean restoreState() {
+        DataInputStream in = stateStore.read();
+        if (in == null) return false;
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        try {
+            notifications.restoreState(in);
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                obtainOverlay(OverlayStateStore.readString(in)).restoreState(in);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable overlay state: " + e.getMessage());
+            stateStore.clear();
+            // Start clean rather than with the overlays read before the corrupt part
+            for (OverlayWindow overlay : overlays.values()) {
+                overlay.close();
+            }
+            overlays.clear();
         }
-        
-        windowManager.updateViewLayout(overlayView, params);
+        restoreNanos = SystemClock.elapsedRealtimeNanos() - start;
+        return !overlays.isEmpty();
+    }
+
+    // Called by the overlays whenever their persisted state changes
+    void onOverlayStateChanged() {
+        stateStore.markDirty();
     }
 
-    private int getAlignment(int alignmentIndex) {
-        switch (alignmentIndex) {
-            case 0: return Gravity.CENTER;
-            case 1: return Gravity.TOP;
-            case 2: return Gravity.BOTTOM;
-            case 3: return Gravity.LEFT;
-            case 4: return Gravity.RIGHT;
-            case 5: return Gravity.TOP | Gravity.LEFT;
-            case 6: return Gravity.TOP | Gravity.RIGHT;
-            case 7: return Gravity.BOTTOM | Gravity.LEFT;
-            case 8: return Gravity.BOTTOM | Gravity.RIGHT;
-            default: return Gravity.CENTER;
+    private OverlayWindow obtainOverlay(String overlayId) {
+        OverlayWindow overlay = overlays.get(overlayId);
+        if (overlay == null) {
+            overlay = new OverlayWindow(this, windowManager, overlayId);
+            overlay.setScreenOff(powerMonitor.isLowPower());
+            overlays.put(overlayId, overlay);
         }
+        return overlay;
     }
 
-    private int getFlag(int flagIndex) {
-        switch (flagIndex) {
-            case 0: return WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE; // defaultFlag
-            case 1: return WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE | WindowManager.LayoutParams.FLAG_WATCH_OUTSIDE_TOUCH; // focusPointer
-            default: return WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+    // Closes one overlay and stops the service once none are left
+    void closeOverlayWindow(String overlayId) {
+        OverlayWindow overlay = overlays.remove(overlayId);
+        if (overlay != null) {
+            overlay.close();
+        }
+        if (overlays.isEmpty()) {
+            stopSelf();
+        } else {
+            stateStore.markDirty();
         }
     }
 
@@ -284,95 +377,354 @@ public class OverlayService extends Service {
         }
     }
 
-    private Notification createNotification(String title, String content) {
-        Intent notificationIntent = getPackageManager().getLaunchIntentForPackage(getPackageName());
-        
-        PendingIntent pendingIntent = PendingIntent.getActivity(
-            this, 0, notificationIntent,
-            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        String notificationTitle = (title == null) ? "Overlay Active" : title;
-        String notificationContent = (content == null) ? "Tap to open the app" : content;
-
-        return new NotificationCompat.Builder(this, CHANNEL_ID)
-            .setContentTitle(notificationTitle)
-            .setContentText(notificationContent)
-            .setSmallIcon(android.R.drawable.ic_dialog_info)
-            .setContentIntent(pendingIntent)
-            .setPriority(NotificationCompat.PRIORITY_LOW)
-            .build();
-    }
-
     @Override
     public void onDestroy() {
         super.onDestroy();
         instance = null;
-        if (overlayView != null && windowManager != null) {
-            windowManager.removeView(overlayView);
+        powerMonitor.stop();
+        displays.stop();
+        notifications.cancel();
+        // Closed on purpose, so there is nothing to restore
+        stateStore.clear();
+        for (OverlayWindow overlay : overlays.values()) {
+            overlay.close();
         }
-        sendEvent("overlay_closed", null);
+        overlays.clear();
+        // Pending writes, including the state file deletion, finish first
+        worker.quit();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        switch (level) {
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL:
+            case ComponentCallbacks2.TRIM_MEMORY_COMPLETE:
+                shedResources(SHED_ENGINES);
+                break;
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW:
+            case ComponentCallbacks2.TRIM_MEMORY_MODERATE:
+                shedResources(SHED_HIDDEN_VIEWS);
+                break;
+            case ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN:
+                // The app's UI went to the background; not memory pressure
+                break;
+            default:
+                shedResources(SHED_CACHES);
+                break;
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        shedResources(SHED_ENGINES);
+    }
+
+    /**
+     * Frees what {@code tier} allows and reports it as a RESOURCES_SHED event: caches first,
+     * then the windows of hidden overlays, then their engines and the spare engine. Visible
+     * overlays are never touched; shed ones are rebuilt from their kept configuration on the
+     * next show, which reports RESOURCES_RESTORED.
+     */
+    private void shedResources(int tier) {
+        long bytes = events.trimMemory() + stateStore.trimMemory();
+        int views = 0;
+        int engineCount = OverlayEngineManager.getActiveEngineCount()
+            + (OverlayEngineManager.hasSpareEngine() ? 1 : 0);
+
+        for (OverlayWindow overlay : overlays.values()) {
+            bytes += overlay.trimCaches();
+            if (tier >= SHED_HIDDEN_VIEWS) {
+                long viewBytes = overlay.shedHiddenView(tier >= SHED_ENGINES);
+                if (viewBytes > 0) {
+                    bytes += viewBytes;
+                    views++;
+                }
+            }
+        }
+        if (tier >= SHED_ENGINES) {
+            OverlayEngineManager.releaseSpareEngine();
+            // The process may be killed next; keep the state file current for a fast rebuild
+            stateStore.flush();
+        }
+        int engines = engineCount - OverlayEngineManager.getActiveEngineCount()
+            - (OverlayEngineManager.hasSpareEngine() ? 1 : 0);
+
+        memoryTrims++;
+        memoryBytesShed += bytes;
+        hiddenViewsShed += views;
+        enginesShed += engines;
+        events.add(OverlayEventBatcher.RESOURCES_SHED, OverlayEventBatcher.NO_OVERLAY,
+            tier, bytes, views, engines);
+    }
+
+    @Override
     public IBinder onBind(Intent intent) {
-        return null;
+        return binder;
     }
 
     // Static methods for communication with Flutter
     public static void setEventSink(EventChannel.EventSink sink) {
-        eventSink = sink;
+        events.setSink(sink);
+    }
+
+    // Registry lookup for the static entry points; null when the service or overlay is gone
+    private static OverlayWindow findOverlay(String overlayId) {
+        OverlayService service = instance;
+        return service != null ? service.overlays.get(overlayId) : null;
+    }
+
+    // Runs view and window changes on the main thread, directly when already there
+    private static void runOnMain(Runnable action) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            action.run();
+        } else {
+            mainHandler.post(action);
+        }
+    }
+
+    // Public static methods for Flutter communication
+    public static void shareData(String data) {
+        shareData(DEFAULT_OVERLAY_ID, data);
+    }
+
+    public static void shareData(String overlayId, String data) {
+        OverlayWindow overlay = findOverlay(overlayId);
+        if (overlay != null) {
+            // Coalesced per frame, so safe from any thread
+            overlay.updateText(data);
+            OverlayService service = instance;
+            if (service != null && OverlayNotificationController.isMirroringSharedData()) {
+                runOnMain(() -> service.notifications.updateContent(data));
+            }
+        }
+    }
+
+    /**
+     * Registers a native listener that also reads binary payloads sent with
+     * {@code shareBinaryData}, next to the overlay they are sent to. Pass null to stop
+     * receiving them.
+     */
+    public static void setPayloadListener(OverlayPayload.Listener listener) {
+        payloadListener = listener;
+    }
+
+    /**
+     * Copies one raw frame into the frame channel of the overlay it names; the layout is
+     * described in {@link OverlayFrameChannel}. May be called from any thread, by one producer
+     * per overlay at a time. Returns false if the overlay is not shown or the frame is malformed.
+     */
+    public static boolean shareFrame(ByteBuffer message) {
+        OverlayService service = instance;
+        if (service == null || message == null) return false;
+        String overlayId = OverlayFrameChannel.readOverlayId(message);
+        if (overlayId == null) return false;
+
+        OverlayWindow overlay = service.overlays.get(overlayId.isEmpty() ? DEFAULT_OVERLAY_ID : overlayId);
+        return overlay != null && overlay.getFrameChannel().write(message);
+    }
+
+    /**
+     * Hands a binary payload to the overlay it names, which keeps it and forwards it to its
+     * engine, and to the payload listener. Messages are u8 idLength, idLength bytes (UTF-8
+     * overlay id, empty for the default), then the payload. Called on the main thread with the
+     * messenger's direct buffer, which is only valid during this call; the listener reads it in
+     * place.
+     */
+    public static void shareBinaryData(ByteBuffer message) {
+        binaryPayloads++;
+        if (message == null || message.remaining() < 1) return;
+        int idLength = message.get(0) & 0xFF;
+        if (message.limit() < 1 + idLength) return;
+        String overlayId = readPayloadId(message, idLength);
+        message.position(1 + idLength);
+        ByteBuffer data = message.slice();
+
+        OverlayWindow overlay = findOverlay(overlayId);
+        if (overlay != null) {
+            overlay.sharePayload(data);
+        }
+        OverlayPayload.Listener listener = payloadListener;
+        if (listener == null) return;
+        payload.bind(overlayId, data);
+        try {
+            listener.onPayload(payload);
+        } finally {
+            payload.bind(null, null);
+        }
     }
 
-    private void sendEvent(String event, Map<String, Object> data) {
-        if (eventSink != null) {
-            Map<String, Object> eventData = new HashMap<>();
-            eventData.put("event", event);
-            if (data != null) {
-                eventData.putAll(data);
+    // Decodes the overlay id of a payload message, allocating only when it differs from the last
+    private static String readPayloadId(ByteBuffer message, int idLength) {
+        byte[] last = lastPayloadIdBytes;
+        boolean same = last.length == idLength;
+        for (int i = 0; same && i < idLength; i++) {
+            same = last[i] == message.get(1 + i);
+        }
+        if (!same) {
+            byte[] id = new byte[idLength];
+            for (int i = 0; i < idLength; i++) {
+                id[i] = message.get(1 + i);
             }
-            eventSink.success(eventData);
+            lastPayloadIdBytes = id;
+            lastPayloadId = idLength > 0 ? new String(id, StandardCharsets.UTF_8) : DEFAULT_OVERLAY_ID;
         }
+        return lastPayloadId;
     }
 
-    private Map<String, Object> createPositionMap() {
-        Map<String, Object> position = new HashMap<>();
-        position.put("x", params.x);
-        position.put("y", params.y);
-        return position;
+    /** Closes one overlay. Returns false if it does not exist. */
+    public static boolean closeOverlay(String overlayId) {
+        OverlayService service = instance;
+        if (service == null || !service.overlays.containsKey(overlayId)) return false;
+        runOnMain(() -> service.closeOverlayWindow(overlayId));
+        return true;
     }
 
-    // Public method to update overlay text
-    public void updateOverlayText(final String text) {
-        if (overlayView != null && textView != null) {
-            overlayView.post(() -> textView.setText(text));
+    public static void hideOverlay(String overlayId) {
+        OverlayWindow overlay = findOverlay(overlayId);
+        if (overlay != null) {
+            runOnMain(overlay::hide);
         }
     }
 
-    // Public static methods for Flutter communication
-    public static void shareData(String data) {
-        if (instance != null) {
-            instance.updateOverlayText(data);
+    public static void updateFlag(String overlayId, int flag) {
+        OverlayWindow overlay = findOverlay(overlayId);
+        if (overlay != null) {
+            runOnMain(() -> overlay.updateFlag(OverlayConfig.getFlag(flag)));
+        }
+    }
+
+    public static void resizeOverlay(String overlayId, int width, int height) {
+        OverlayWindow overlay = findOverlay(overlayId);
+        if (overlay != null) {
+            runOnMain(() -> overlay.resize(width, height));
+        }
+    }
+
+    public static void moveOverlay(String overlayId, int x, int y) {
+        OverlayWindow overlay = findOverlay(overlayId);
+        if (overlay != null) {
+            runOnMain(() -> overlay.move(x, y));
         }
-        Log.d(TAG, "Shared data: " + data);
     }
 
-    public static void updateFlag(int flag) {
-        // Implementation for updating flag
-        Log.d(TAG, "Updated flag: " + flag);
+    /**
+     * Validates {@code operations} and applies them to the overlay with one relayout. Returns
+     * the resulting geometry, or null if the overlay does not exist.
+     *
+     * @throws IllegalArgumentException if an operation is malformed; nothing is applied then
+     */
+    public static Map<String, Object> applyOverlayUpdates(String overlayId, List<?> operations) {
+        OverlayUpdates updates = OverlayUpdates.parse(operations);
+        OverlayWindow overlay = findOverlay(overlayId);
+        if (overlay == null) return null;
+
+        int[] geometry = overlay.applyUpdates(updates);
+        Map<String, Object> result = new HashMap<>();
+        result.put("x", geometry[0]);
+        result.put("y", geometry[1]);
+        result.put("width", geometry[2]);
+        result.put("height", geometry[3]);
+        return result;
+    }
+
+    public static Map<String, Object> getOverlayStats(String overlayId) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("binaryPayloads", binaryPayloads);
+        stats.put("engineWarmUpMode", OverlayEngineManager.getWarmUpMode());
+        stats.put("engineStartupMs", OverlayEngineManager.getEngineStartupMs());
+        stats.put("engineTimeToFirstFrameMs", OverlayEngineManager.getTimeToFirstFrameMs());
+        stats.put("activeEngines", OverlayEngineManager.getActiveEngineCount());
+        stats.put("eventsEmitted", events.getEventsEmitted());
+        stats.put("eventBatchesSent", events.getBatchesSent());
+        stats.put("eventsBuffered", events.getEventsBuffered());
+        stats.put("eventsReplayed", events.getEventsReplayed());
+        stats.put("eventsDropped", events.getEventsDropped());
+
+        OverlayService service = instance;
+        stats.put("overlayCount", service != null ? service.overlays.size() : 0);
+        stats.put("lowPowerMode", isLowPowerMode() ? 1 : 0);
+        if (service != null) {
+            stats.put("lowPowerEntries", service.powerMonitor.getLowPowerEntries());
+            stats.put("displayMeasurements", service.displays.getMeasurements());
+            stats.put("displayGeometryChanges", service.displays.getChanges());
+            stats.put("overlaysRemapped", service.overlaysRemapped);
+            stats.put("memoryTrims", service.memoryTrims);
+            stats.put("memoryBytesShed", service.memoryBytesShed);
+            stats.put("hiddenViewsShed", service.hiddenViewsShed);
+            stats.put("enginesShed", service.enginesShed);
+            stats.put("showIntentCalls", service.intentShows);
+            stats.put("showIntentAvgMicros", average(service.intentShowNanos, service.intentShows) / 1000);
+            stats.put("showBoundCalls", service.boundShows);
+            stats.put("showBoundAvgMicros", average(service.boundShowNanos, service.boundShows) / 1000);
+            stats.put("notificationsPosted", service.notifications.getPosted());
+            stats.put("notificationsCoalesced", service.notifications.getCoalesced());
+            stats.put("notificationsSkippedIdentical", service.notifications.getSkippedIdentical());
+            stats.put("stateSnapshotsWritten", service.stateStore.getSnapshotsWritten());
+            stats.put("stateSnapshotsSkipped", service.stateStore.getSnapshotsSkipped());
+            stats.put("stateRestoreMicros", service.restoreNanos < 0 ? -1 : service.restoreNanos / 1000);
+        }
+        OverlayWindow overlay = findOverlay(overlayId);
+        if (overlay != null) {
+            overlay.putStats(stats);
+        }
+        return stats;
+    }
+
+    interface MetricsCallback {
+        void onMetrics(Map<String, Object> metrics);
+    }
+
+    /**
+     * Builds the metrics snapshot on the worker while the service runs, and on the calling
+     * thread otherwise. {@code callback} runs on the main thread.
+     */
+    static void snapshotMetrics(MetricsCallback callback) {
+        OverlayService service = instance;
+        boolean posted = service != null && service.worker.post(() -> {
+            Map<String, Object> metrics = OverlayMetrics.snapshot();
+            service.worker.postToMain(() -> callback.onMetrics(metrics));
+        });
+        if (!posted) {
+            callback.onMetrics(OverlayMetrics.snapshot());
+        }
+    }
+
+    private static long average(long total, long count) {
+        return count > 0 ? total / count : 0;
+    }
+
+    /** Whether the overlays are holding back updates because nobody can see them. */
+    public static boolean isLowPowerMode() {
+        OverlayService service = instance;
+        return service != null && service.powerMonitor.isLowPower();
+    }
+
+    /** Current position of the overlay, or null if it does not exist. Safe to call from any thread. */
+    public static int[] getOverlayPosition(String overlayId) {
+        OverlayWindow overlay = findOverlay(overlayId);
+        return overlay != null ? overlay.getPosition() : null;
+    }
+
+    /**
+     * Limits foreground notification updates to {@code maxUpdatesPerSecond}. With
+     * {@code mirrorSharedData}, text sent with shareData is also shown in the notification.
+     */
+    public static void configureNotification(int maxUpdatesPerSecond, boolean mirrorSharedData) {
+        OverlayNotificationController.configure(maxUpdatesPerSecond, mirrorSharedData);
     }
 
-    public static void resizeOverlay(int width, int height) {
-        // Implementation for resizing overlay
-        Log.d(TAG, "Resize overlay: " + width + "x" + height);
+    public static void setFrameMonitoring(boolean enabled) {
+        FrameMonitor.setEnabled(enabled);
     }
 
-    public static void moveOverlay(int x, int y) {
-        // Implementation for moving overlay
-        Log.d(TAG, "Move overlay to: " + x + ", " + y);
+    public static void setPositionStreaming(boolean enabled, int maxHz) {
+        PositionStream.configure(enabled, maxHz);
     }
 
-    public static int[] getOverlayPosition() {
-        // Implementation for getting overlay position
-        return new int[]{0, 0}; // Placeholder
+    /** Sets how many events are kept for replay while no Dart listener is attached. */
+    public static void configureEventReplay(int bufferSize) {
+        events.setReplayCapacity(bufferSize);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,185 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AtomicFile;
+import android.util.Log;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Keeps the live overlay state in a small binary file, so a START_STICKY restart can rebuild
+ * the overlays without waiting for the Dart app.
+ *
+ * Changes are debounced: the first change schedules a snapshot {@link #DEBOUNCE_MS} later, so
+ * drags and streams of shareData text cost at most one snapshot per interval. The snapshot is
+ * encoded on the main thread, where the overlays live, skipped when it equals the last one,
+ * and written atomically on the {@link OverlayWorker}. The file holds a u8 version followed by the
+ * state written by the {@link StateWriter}, in {@link DataOutput} encoding. Must be used from
+ * the main thread.
+ */
+final class OverlayStateStore {
+    private static final String TAG = "OverlayStateStore";
+    private static final String FILE_NAME = "flutter_overlay_window_plus.state";
+    private static final int VERSION = 3;
+    static final long DEBOUNCE_MS = 1000;
+
+    interface StateWriter {
+        void writeState(DataOutput out) throws IOException;
+    }
+
+    private final AtomicFile file;
+    private final OverlayWorker worker;
+    private final StateWriter stateWriter;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable snapshot = this::snapshot;
+    private boolean snapshotScheduled = false;
+    private byte[] lastSnapshot;
+
+    // Counters
+    private long snapshotsWritten = 0;
+    private long snapshotsSkipped = 0;
+
+    OverlayStateStore(Context context, OverlayWorker worker, StateWriter stateWriter) {
+        this.file = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+        this.worker = worker;
+        this.stateWriter = stateWriter;
+    }
+
+    /** Schedules a snapshot of the current state. */
+    void markDirty() {
+        if (snapshotScheduled) return;
+        snapshotScheduled = true;
+        mainHandler.postDelayed(snapshot, DEBOUNCE_MS);
+    }
+
+    private void snapshot() {
+        snapshotScheduled = false;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            stateWriter.writeState(out);
+            out.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "Error encoding overlay state: " + e.getMessage());
+            return;
+        }
+
+        final byte[] state = bytes.toByteArray();
+        if (Arrays.equals(state, lastSnapshot)) {
+            snapshotsSkipped++;
+            return;
+        }
+        lastSnapshot = state;
+        snapshotsWritten++;
+        worker.post(() -> write(state));
+    }
+
+    // Worker thread
+    private void write(byte[] state) {
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(state);
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing overlay state: " + e.getMessage());
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+    }
+
+    /** Takes a scheduled snapshot now, e.g. before the process may be killed. */
+    void flush() {
+        if (!snapshotScheduled) return;
+        mainHandler.removeCallbacks(snapshot);
+        snapshot();
+    }
+
+    /** Forgets the last snapshot kept for comparison. Returns the bytes freed. */
+    long trimMemory() {
+        long bytes = lastSnapshot != null ? lastSnapshot.length : 0;
+        lastSnapshot = null;
+        return bytes;
+    }
+
+    /**
+     * Reads the saved state from memory, positioned after the version byte. Returns null if
+     * there is none or it was written by another version.
+     */
+    DataInputStream read() {
+        try {
+            byte[] state = file.readFully();
+            if (state.length == 0 || state[0] != VERSION) return null;
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(state));
+            in.readByte();
+            return in;
+        } catch (IOException e) {
+            // No state file yet
+            return null;
+        }
+    }
+
+    /** Drops any pending snapshot and deletes the file, e.g. once the overlays are closed. */
+    void clear() {
+        mainHandler.removeCallbacks(snapshot);
+        snapshotScheduled = false;
+        lastSnapshot = null;
+        // Queued behind any write in flight, which it must follow
+        worker.post(file::delete);
+    }
+
+    long getSnapshotsWritten() {
+        return snapshotsWritten;
+    }
+
+    long getSnapshotsSkipped() {
+        return snapshotsSkipped;
+    }
+
+    /**
+     * Writes a nullable string as i32 length, -1 for null, and UTF-8 bytes. Unlike
+     * {@link DataOutput#writeUTF} this has no 64 KB limit, which long shareData text can reach.
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = readLength(in);
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the i32 length of a byte field, -1 for none. A corrupt length fails with an
+     * IOException before anything is allocated for it: the state is read from memory, so
+     * {@code available()} is exactly the bytes left.
+     */
+    static int readLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < -1 || length > in.available()) {
+            throw new IOException("Corrupt field length " + length);
+        }
+        return length;
+    }
+}
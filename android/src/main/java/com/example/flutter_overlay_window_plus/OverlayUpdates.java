@@ -0,0 +1,75 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.view.WindowManager;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A validated batch of geometry and flag changes, applied to an overlay with one relayout.
+ *
+ * Parsed from the operation list sent by {@code applyOverlayUpdates}; each operation is a map
+ * with an {@code op} of {@code move}, {@code resize} or {@code flag}. When an operation appears
+ * more than once, the last one wins.
+ */
+final class OverlayUpdates {
+    boolean move, resize, flag;
+    int x, y, width, height, flagIndex;
+
+    private OverlayUpdates() {
+    }
+
+    /** Parses and validates {@code operations}, throwing IllegalArgumentException on bad input. */
+    static OverlayUpdates parse(List<?> operations) {
+        if (operations == null) {
+            throw new IllegalArgumentException("operations must not be null");
+        }
+
+        OverlayUpdates updates = new OverlayUpdates();
+        for (int i = 0; i < operations.size(); i++) {
+            if (!(operations.get(i) instanceof Map)) {
+                throw new IllegalArgumentException("operation " + i + " is not a map");
+            }
+            Map<?, ?> operation = (Map<?, ?>) operations.get(i);
+            Object op = operation.get("op");
+            if ("move".equals(op)) {
+                updates.move = true;
+                updates.x = intArgument(operation, "x", i);
+                updates.y = intArgument(operation, "y", i);
+            } else if ("resize".equals(op)) {
+                updates.resize = true;
+                updates.width = sizeArgument(operation, "width", i);
+                updates.height = sizeArgument(operation, "height", i);
+            } else if ("flag".equals(op)) {
+                updates.flag = true;
+                updates.flagIndex = intArgument(operation, "flag", i);
+                if (updates.flagIndex < 0 || updates.flagIndex >= OverlayConfig.FLAG_COUNT) {
+                    throw new IllegalArgumentException("operation " + i + " has unknown flag " + updates.flagIndex);
+                }
+            } else {
+                throw new IllegalArgumentException("operation " + i + " has unknown op " + op);
+            }
+        }
+        return updates;
+    }
+
+    // Dart ints arrive as Integer, or Long beyond 32 bits; anything else would be truncated
+    private static int intArgument(Map<?, ?> operation, String key, int index) {
+        Object value = operation.get(key);
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+        if (value instanceof Long && (Long) value == ((Long) value).intValue()) {
+            return ((Long) value).intValue();
+        }
+        throw new IllegalArgumentException("operation " + index + " needs a 32-bit integer " + key);
+    }
+
+    // A size in pixels, or MATCH_PARENT or WRAP_CONTENT
+    private static int sizeArgument(Map<?, ?> operation, String key, int index) {
+        int size = intArgument(operation, key, index);
+        if (size < WindowManager.LayoutParams.WRAP_CONTENT) {
+            throw new IllegalArgumentException("operation " + index + " has invalid " + key + " " + size);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,944 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.PixelFormat;
+import android.util.Log;
+import android.view.Display;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.Button;
+import android.widget.RelativeLayout;
+import android.widget.TextView;
+import io.flutter.embedding.android.FlutterTextureView;
+import io.flutter.embedding.android.FlutterView;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One overlay window managed by {@link OverlayService}, identified by its overlay id.
+ *
+ * Holds the window's view, layout params, configuration and drag state. All methods must be
+ * called on the main thread.
+ */
+class OverlayWindow {
+    private static final String TAG = "OverlayWindow";
+    // How far ahead a fling is projected when choosing the edge for PositionGravity.auto
+    private static final float FLING_PROJECTION_SECONDS = 0.15f;
+
+    final String id;
+    // Encoded once for the event batcher
+    final byte[] idBytes;
+    private final OverlayService service;
+    // Window manager of the display the window is on, replaced when it moves to another display
+    private WindowManager windowManager;
+    private int attachedDisplayId = Display.DEFAULT_DISPLAY;
+
+    private View overlayView;
+    private WindowManager.LayoutParams params;
+    private TextView textView;
+    private FlutterView flutterView;
+    // Added on the first frame from the frame channel
+    private OverlayFrameView frameView;
+
+    // Overlay properties
+    int overlayWidth = WindowManager.LayoutParams.MATCH_PARENT;
+    int overlayHeight = WindowManager.LayoutParams.MATCH_PARENT;
+    int alignment = Gravity.CENTER;
+    int flag = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+    boolean enableDrag = false;
+    boolean flutterContent = false;
+    int positionGravity = 0; // 0: none, 1: right, 2: left, 3: auto
+    boolean snapAnimated = false;
+    float snapStiffness = SnapAnimator.DEFAULT_STIFFNESS;
+    float snapDampingRatio = SnapAnimator.DEFAULT_DAMPING_RATIO;
+    // Display to show the overlay on; an existing display, see OverlayService.resolveDisplayId
+    int displayId = Display.DEFAULT_DISPLAY;
+
+    // Drag variables
+    private int initialX, initialY;
+    private float initialTouchX, initialTouchY;
+    private boolean isDragging = false;
+    private boolean hidden = false;
+    // Set by the service while nobody can see any overlay; see updateSuspension()
+    private boolean screenOff = false;
+    private boolean relayoutPending = false;
+    // Last shown title and content, content replaced by shareData text; kept for the state file
+    private String title;
+    private String content;
+    // Last binary payload, its bytes up to the position; also kept for the state file
+    private ByteBuffer payload;
+    // Set while the overlay's engine has not been sent the last payload
+    private boolean payloadPending = false;
+    private final DragFrameScheduler dragScheduler;
+    private final SnapAnimator snapAnimator;
+    private VelocityTracker velocityTracker;
+    // Laid-out window size, cached by a layout listener
+    private int viewWidth = 0;
+    private int viewHeight = 0;
+    // Estimated bytes freed when the hidden view was shed under memory pressure, 0 if not shed
+    private long shedBytes = 0;
+    private final TextUpdateCoalescer textCoalescer;
+    private final TextLayoutPipeline textLayout;
+    private final PositionStream positionStream;
+    private final FrameMonitor frameMonitor;
+    // Written from the producer's thread, shown on the main thread
+    private final OverlayFrameChannel frames;
+
+    // x in the high and y in the low 32 bits, so both are read atomically
+    private final AtomicLong position = new AtomicLong();
+
+    // Counters
+    private long overlayViewsCreated = 0;
+    private long overlayInPlaceUpdates = 0;
+    private long suspendedRelayouts = 0;
+    private long suspensionFlushes = 0;
+
+    OverlayWindow(OverlayService service, WindowManager windowManager, String id) {
+        this.service = service;
+        this.windowManager = windowManager;
+        this.id = id;
+        this.idBytes = id.getBytes(StandardCharsets.UTF_8);
+        dragScheduler = new DragFrameScheduler((x, y) -> {
+            if (overlayView == null || params == null) return;
+            params.x = x;
+            params.y = y;
+            relayout();
+            onPositionChanged();
+        });
+        snapAnimator = new SnapAnimator(new SnapAnimator.Target() {
+            @Override
+            public void applyX(int x) {
+                if (overlayView == null || params == null) return;
+                params.x = x;
+                relayout();
+                onPositionChanged();
+            }
+
+            @Override
+            public void onSettled() {
+                emitMoved();
+                service.onOverlayStateChanged();
+            }
+        });
+        positionStream = new PositionStream(idBytes);
+        textLayout = new TextLayoutPipeline(service.getWorker());
+        frameMonitor = new FrameMonitor(idBytes, service.getDisplayGeometry(attachedDisplayId).refreshRate);
+        frames = new OverlayFrameChannel(idBytes);
+        frames.setConsumer(this::showFrame);
+        textCoalescer = new TextUpdateCoalescer(text -> {
+            content = text;
+            service.onOverlayStateChanged();
+            if (flutterView != null) {
+                OverlayEngineManager.sendMessage(id, text);
+            } else {
+                textLayout.setText(text);
+            }
+        });
+    }
+
+    void show(String title, String content, int startX, int startY) {
+        if (startX >= 0 && startY >= 0) {
+            show(title, content, Gravity.NO_GRAVITY, startX, startY);
+        } else {
+            show(title, content, alignment, 0, 0);
+        }
+    }
+
+    // Shows the window at x/y relative to gravity, building it only if needed
+    private void show(String title, String content, int gravity, int x, int y) {
+        this.title = title;
+        this.content = content;
+        service.onOverlayStateChanged();
+        try {
+            dragScheduler.cancel();
+            snapAnimator.cancel();
+
+            // Reuse the attached window when the content type is unchanged
+            if (overlayView != null && overlayView.isAttachedToWindow()
+                    && (flutterView != null) == flutterContent && attachedDisplayId == displayId) {
+                updateInPlace(content != null ? content : title, gravity, x, y);
+                return;
+            }
+
+            textCoalescer.cancel();
+
+            // Keep the engine while a Flutter overlay is being replaced; switched to text, it is
+            // released like on close, by the warm-up mode's rule
+            if (flutterView != null) {
+                OverlayEngineManager.detach(id, flutterView, !flutterContent);
+                flutterView = null;
+            }
+
+            // If an overlay view already exists, remove it first to prevent duplicates
+            if (overlayView != null) {
+                try {
+                    removeWindow();
+                } catch (IllegalArgumentException e) {
+                    // This can happen if the view is already gone. Ignore.
+                    Log.w(TAG, "Tried to remove a view that was not attached: " + e.getMessage());
+                }
+            }
+
+            if (attachedDisplayId != displayId) {
+                windowManager = service.getWindowManager(displayId);
+                attachedDisplayId = displayId;
+                frameMonitor.setRefreshRate(service.getDisplayGeometry(displayId).refreshRate);
+            }
+
+            // Create overlay view
+            overlayView = createView(title, content);
+            frameMonitor.attach(overlayView);
+            Bitmap shownFrame = frames.getShownFrame();
+            if (shownFrame != null) {
+                showFrame(shownFrame);
+            }
+            overlayViewsCreated++;
+            hidden = false;
+            relayoutPending = false;
+            // A new view may come with a new engine, which is sent the last payload on resume
+            payloadPending = payload != null;
+
+            // Create window parameters
+            params = new WindowManager.LayoutParams(
+                overlayWidth,
+                overlayHeight,
+                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
+                flag,
+                PixelFormat.TRANSLUCENT
+            );
+            applyLayoutParams(gravity, x, y);
+
+            // Add overlay to window
+            addWindow();
+            onPositionChanged();
+            updateSuspension();
+            if (shedBytes > 0) {
+                OverlayService.events.add(OverlayEventBatcher.RESOURCES_RESTORED, idBytes, shedBytes);
+                shedBytes = 0;
+            }
+
+            // Send event to Flutter
+            OverlayService.events.add(OverlayEventBatcher.SHOWN, idBytes);
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error showing overlay " + id + ": " + e.getMessage());
+        }
+    }
+
+    // Applies the new configuration to the attached window with a single relayout
+    private void updateInPlace(String text, int gravity, int x, int y) {
+        textCoalescer.cancel();
+        if (textView != null) {
+            textLayout.cancel();
+            textView.setText(text);
+            textCoalescer.markApplied(text);
+        }
+
+        applyLayoutParams(gravity, x, y);
+        boolean wasHidden = hidden;
+        if (hidden) {
+            overlayView.setVisibility(View.VISIBLE);
+            hidden = false;
+        }
+        relayout();
+        onPositionChanged();
+        if (wasHidden) {
+            updateSuspension();
+        }
+        overlayInPlaceUpdates++;
+
+        OverlayService.events.add(OverlayEventBatcher.SHOWN, idBytes);
+    }
+
+    private void applyLayoutParams(int gravity, int x, int y) {
+        params.width = overlayWidth;
+        params.height = overlayHeight;
+        params.flags = flag;
+        params.gravity = gravity;
+        params.x = x;
+        params.y = y;
+    }
+
+    // Hides the overlay without detaching it, so the next show only needs one relayout
+    void hide() {
+        if (overlayView == null || hidden) return;
+
+        dragScheduler.cancel();
+        snapAnimator.cancel();
+        isDragging = false;
+        overlayView.setVisibility(View.GONE);
+        OverlayEngineManager.setVisible(id, false);
+        params.flags |= WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE;
+        // Not held back while the screen is off: a hidden window must stop taking touches, and
+        // updateSuspension() applies nothing while the overlay stays hidden
+        updateWindow();
+        hidden = true;
+        updateSuspension();
+        service.onOverlayStateChanged();
+
+        OverlayService.events.add(OverlayEventBatcher.HIDDEN, idBytes);
+    }
+
+    /** Called by the service when the screen turns off or on, or the keyguard comes and goes. */
+    void setScreenOff(boolean off) {
+        screenOff = off;
+        updateSuspension();
+    }
+
+    // While the screen is off or the overlay is hidden nobody can see it, so text, relayouts and
+    // position events are held back with only the latest kept, and applied once on resume.
+    private void updateSuspension() {
+        boolean suspended = screenOff || hidden;
+        textCoalescer.setSuspended(suspended);
+        positionStream.setSuspended(suspended);
+        frames.setSuspended(suspended);
+        if (overlayView == null) return;
+
+        if (!hidden) {
+            OverlayEngineManager.setVisible(id, !screenOff);
+        }
+        if (!suspended && relayoutPending) {
+            suspensionFlushes++;
+            relayout();
+        }
+        if (!suspended && payloadPending) {
+            sendPayload();
+        }
+    }
+
+    /**
+     * Under memory pressure, removes a hidden overlay's window and views; its configuration and
+     * content stay, so the next show rebuilds it. With {@code releaseEngine} its Flutter engine
+     * is released too. Returns the estimated bytes freed, 0 if the overlay is not hidden.
+     */
+    long shedHiddenView(boolean releaseEngine) {
+        if (overlayView == null || !hidden) return 0;
+
+        // One ARGB_8888 buffer of the window surface, plus the text kept by the view
+        long bytes = (long) viewWidth * viewHeight * 4 + textLayout.clearCache();
+        if (textView != null && textView.getText() != null) {
+            bytes += textView.getText().length() * 2L;
+        }
+
+        removeOverlayWindow(releaseEngine);
+        bytes += frames.trimMemory();
+        shedBytes = bytes;
+        return bytes;
+    }
+
+    /** Drops caches that are cheap to rebuild. Returns the estimated bytes freed. */
+    long trimCaches() {
+        return textLayout.clearCache();
+    }
+
+    /**
+     * Keeps the overlay at the same relative place when its display is rotated or resized: the
+     * distance of its corner from the start of the usable area, which begins at the insets, is
+     * scaled by the room the window has to move in, so an overlay at an edge stays there
+     * whatever its gravity. Applied with one relayout. Returns whether the overlay moved.
+     */
+    boolean onDisplayGeometryChanged(DisplayGeometry previous, DisplayGeometry geometry) {
+        if (geometry.displayId != attachedDisplayId) return false;
+        frameMonitor.setRefreshRate(geometry.refreshRate);
+        if (overlayView == null || params == null || geometry.sameLayout(previous)) return false;
+
+        int x = toParamsX(geometry, geometry.insetLeft + remap(
+            toScreenX(previous, params.x) - previous.insetLeft,
+            previous.usableWidth() - viewWidth, geometry.usableWidth() - viewWidth));
+        int y = toParamsY(geometry, geometry.insetTop + remap(
+            toScreenY(previous, params.y) - previous.insetTop,
+            previous.usableHeight() - viewHeight, geometry.usableHeight() - viewHeight));
+        if (x == params.x && y == params.y) {
+            // Same offsets, but the usable area, and the window with it, may have moved
+            long before = position.get();
+            onPositionChanged();
+            if (position.get() != before) {
+                emitMoved();
+            }
+            return false;
+        }
+
+        dragScheduler.cancel();
+        snapAnimator.cancel();
+        params.x = x;
+        params.y = y;
+        relayout();
+        onPositionChanged();
+        emitMoved();
+        service.onOverlayStateChanged();
+        return true;
+    }
+
+    private static int remap(int offset, int previousRoom, int room) {
+        if (previousRoom <= 0) return offset;
+        return Math.round(offset * (float) Math.max(0, room) / previousRoom);
+    }
+
+    /** Moves the window to {@code displayId}, e.g. when its display was removed. */
+    void moveToDisplay(int displayId) {
+        this.displayId = displayId;
+        service.onOverlayStateChanged();
+        if (overlayView == null || attachedDisplayId == displayId) return;
+
+        dragScheduler.cancel();
+        snapAnimator.cancel();
+        isDragging = false;
+        try {
+            removeWindow();
+        } catch (IllegalArgumentException e) {
+            // Already removed along with its display
+            Log.w(TAG, "Tried to remove a view that was not attached: " + e.getMessage());
+        }
+        windowManager = service.getWindowManager(displayId);
+        attachedDisplayId = displayId;
+        frameMonitor.setRefreshRate(service.getDisplayGeometry(displayId).refreshRate);
+        addWindow();
+        onPositionChanged();
+        emitMoved();
+    }
+
+    /** Removes the window and releases its engine. The instance must not be reused. */
+    void close() {
+        removeOverlayWindow(true);
+        frames.release();
+        OverlayService.events.add(OverlayEventBatcher.CLOSED, idBytes);
+    }
+
+    // Stops everything bound to the window and removes it, for close() and shedHiddenView().
+    // The configuration, content and params stay.
+    private void removeOverlayWindow(boolean releaseEngine) {
+        dragScheduler.cancel();
+        snapAnimator.cancel();
+        recycleVelocityTracker();
+        positionStream.cancel();
+        frameMonitor.detach();
+        textCoalescer.cancel();
+        textLayout.attach(null);
+        if (flutterView != null) {
+            OverlayEngineManager.detach(id, flutterView, releaseEngine);
+            flutterView = null;
+        }
+        if (overlayView != null) {
+            try {
+                removeWindow();
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Tried to remove a view that was not attached: " + e.getMessage());
+            }
+            overlayView = null;
+        }
+        textView = null;
+        frameView = null;
+    }
+
+    void move(int x, int y) {
+        if (overlayView == null) return;
+        dragScheduler.cancel();
+        snapAnimator.cancel();
+        params.x = x;
+        params.y = y;
+        relayout();
+        onPositionChanged();
+        service.onOverlayStateChanged();
+    }
+
+    void resize(int width, int height) {
+        overlayWidth = width;
+        overlayHeight = height;
+        service.onOverlayStateChanged();
+        if (overlayView == null) return;
+        params.width = width;
+        params.height = height;
+        relayout();
+    }
+
+    void updateFlag(int flag) {
+        this.flag = flag;
+        service.onOverlayStateChanged();
+        if (overlayView == null) return;
+        params.flags = hidden ? flag | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE : flag;
+        relayout();
+    }
+
+    /**
+     * Applies all of {@code updates} as one LayoutParams mutation with a single relayout.
+     * Returns the resulting {x, y, width, height}, x and y being the corner on screen.
+     */
+    int[] applyUpdates(OverlayUpdates updates) {
+        if (updates.resize) {
+            overlayWidth = updates.width;
+            overlayHeight = updates.height;
+        }
+        if (updates.flag) {
+            flag = OverlayConfig.getFlag(updates.flagIndex);
+        }
+        service.onOverlayStateChanged();
+        if (overlayView == null) {
+            // Nothing to move; the size and flag apply to the next show
+            int[] position = getPosition();
+            return new int[]{position[0], position[1], overlayWidth, overlayHeight};
+        }
+
+        if (updates.move) {
+            dragScheduler.cancel();
+            snapAnimator.cancel();
+            params.x = updates.x;
+            params.y = updates.y;
+        }
+        if (updates.resize) {
+            params.width = overlayWidth;
+            params.height = overlayHeight;
+        }
+        if (updates.flag) {
+            params.flags = hidden ? flag | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE : flag;
+        }
+        if (updates.move || updates.resize || updates.flag) {
+            relayout();
+            if (updates.move) onPositionChanged();
+        }
+        int[] position = getPosition();
+        return new int[]{position[0], position[1], params.width, params.height};
+    }
+
+    // Bursts are coalesced to one update per frame
+    void updateText(String text) {
+        textCoalescer.submit(text);
+    }
+
+    /**
+     * Keeps a copy of a binary payload and forwards it to the overlay's engine. Like text, only
+     * the latest is sent once the overlay can be seen again.
+     */
+    void sharePayload(ByteBuffer data) {
+        int size = data.remaining();
+        if (payload == null || payload.capacity() < size) {
+            payload = ByteBuffer.allocateDirect(size);
+        }
+        payload.clear();
+        payload.put(data);
+        data.rewind();
+        payloadPending = true;
+        service.onOverlayStateChanged();
+        if (!screenOff && !hidden) {
+            sendPayload();
+        }
+    }
+
+    private void sendPayload() {
+        payloadPending = false;
+        if (flutterView != null) {
+            OverlayEngineManager.sendPayload(id, payload);
+        }
+    }
+
+    private View createView(String title, String content) {
+        // Use a RelativeLayout to easily position the close button
+        RelativeLayout layout = new RelativeLayout(service);
+        layout.setBackgroundColor(Color.parseColor("#80000000")); // Semi-transparent black
+
+        // Content TextView
+        textView = new TextView(service);
+        String initialText = content != null ? content : title;
+        textView.setText(initialText);
+        textCoalescer.markApplied(initialText);
+        textView.setTextColor(Color.WHITE);
+        textView.setTextSize(16);
+        textView.setPadding(40, 40, 40, 40); // Increased padding
+        RelativeLayout.LayoutParams textParams = new RelativeLayout.LayoutParams(
+                RelativeLayout.LayoutParams.WRAP_CONTENT,
+                RelativeLayout.LayoutParams.WRAP_CONTENT);
+        textParams.addRule(RelativeLayout.CENTER_IN_PARENT, RelativeLayout.TRUE);
+        textView.setLayoutParams(textParams);
+        textLayout.attach(textView);
+
+        // Close Button
+        Button closeButton = new Button(service);
+        closeButton.setText("X");
+        closeButton.setTextColor(Color.WHITE);
+        closeButton.setBackgroundColor(Color.TRANSPARENT);
+        closeButton.setOnClickListener(v -> {
+            // Re-launch the app
+            Intent launchIntent = service.getPackageManager().getLaunchIntentForPackage(service.getPackageName());
+            if (launchIntent != null) {
+                launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                service.startActivity(launchIntent);
+            }
+            // Close this overlay; the service stops once none are left
+            service.closeOverlayWindow(id);
+        });
+
+        RelativeLayout.LayoutParams buttonParams = new RelativeLayout.LayoutParams(
+                RelativeLayout.LayoutParams.WRAP_CONTENT,
+                RelativeLayout.LayoutParams.WRAP_CONTENT);
+        buttonParams.addRule(RelativeLayout.ALIGN_PARENT_TOP);
+        buttonParams.addRule(RelativeLayout.ALIGN_PARENT_RIGHT);
+        closeButton.setLayoutParams(buttonParams);
+
+        if (flutterContent) {
+            // Render overlayMain() from the overlay's engine underneath the close button
+            flutterView = new FlutterView(service, new FlutterTextureView(service));
+            layout.addView(flutterView, new RelativeLayout.LayoutParams(
+                RelativeLayout.LayoutParams.MATCH_PARENT,
+                RelativeLayout.LayoutParams.MATCH_PARENT));
+            OverlayEngineManager.attach(service, id, flutterView, () ->
+                OverlayService.events.add(OverlayEventBatcher.FIRST_FRAME, idBytes,
+                    OverlayEngineManager.getTimeToFirstFrameMs()));
+        } else {
+            layout.addView(textView);
+        }
+        layout.addView(closeButton);
+        layout.addOnLayoutChangeListener((v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> {
+            if (right - left == viewWidth && bottom - top == viewHeight) return;
+            viewWidth = right - left;
+            viewHeight = bottom - top;
+            // With right, bottom or center gravity the corner on screen depends on the size
+            if (params != null) {
+                onPositionChanged();
+            }
+        });
+
+        // Gated on enableDrag per touch, so in-place updates can toggle dragging.
+        // Flutter content still needs its touches, so there the listener only observes them.
+        final boolean consume = !flutterContent;
+        View dragTarget = flutterContent ? flutterView : layout;
+        dragTarget.setOnTouchListener(new View.OnTouchListener() {
+            @Override
+            public boolean onTouch(View v, MotionEvent event) {
+                if (!enableDrag) return false;
+                switch (event.getActionMasked()) {
+                    case MotionEvent.ACTION_DOWN:
+                        // Grabbing the overlay stops a running snap where it is
+                        dragScheduler.cancel();
+                        snapAnimator.cancel();
+                        if (velocityTracker == null) {
+                            velocityTracker = VelocityTracker.obtain();
+                        } else {
+                            velocityTracker.clear();
+                        }
+                        trackVelocity(event);
+                        initialX = params.x;
+                        initialY = params.y;
+                        initialTouchX = event.getRawX();
+                        initialTouchY = event.getRawY();
+                        isDragging = true;
+                        return consume;
+
+                    case MotionEvent.ACTION_MOVE:
+                        if (isDragging) {
+                            trackVelocity(event);
+                            // Batched events carry older historical samples; the current
+                            // sample is the newest, so only it decides the window position.
+                            dragScheduler.requestMove(
+                                initialX + (int) (event.getRawX() - initialTouchX),
+                                initialY + (int) (event.getRawY() - initialTouchY),
+                                event.getHistorySize() + 1);
+                        }
+                        return consume;
+
+                    case MotionEvent.ACTION_UP:
+                    case MotionEvent.ACTION_CANCEL:
+                        float velocityX = 0;
+                        if (isDragging && velocityTracker != null) {
+                            trackVelocity(event);
+                            velocityTracker.computeCurrentVelocity(1000);
+                            velocityX = velocityTracker.getXVelocity();
+                        }
+                        isDragging = false;
+                        dragScheduler.flush();
+                        settle(velocityX);
+                        return consume;
+                }
+                return false;
+            }
+        });
+
+        return layout;
+    }
+
+    // Feeds screen coordinates, historical samples included, to the velocity tracker. The
+    // window follows the finger, so view-local coordinates would read as almost no movement.
+    private void trackVelocity(MotionEvent event) {
+        float offsetX = event.getRawX() - event.getX();
+        float offsetY = event.getRawY() - event.getY();
+        event.offsetLocation(offsetX, offsetY);
+        velocityTracker.addMovement(event);
+        event.offsetLocation(-offsetX, -offsetY);
+    }
+
+    private void recycleVelocityTracker() {
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+
+    // Moves the released overlay to the edge given by positionGravity, springing there when
+    // snapAnimated is set. MOVED is sent once the overlay comes to rest.
+    private void settle(float velocityX) {
+        int targetX = positionGravityX(velocityX);
+        if (targetX == params.x) {
+            emitMoved();
+            service.onOverlayStateChanged();
+        } else if (snapAnimated) {
+            snapAnimator.stiffness = snapStiffness;
+            snapAnimator.dampingRatio = snapDampingRatio;
+            // With right gravity params.x grows leftwards
+            boolean fromRight = (params.gravity & Gravity.HORIZONTAL_GRAVITY_MASK) == Gravity.RIGHT;
+            snapAnimator.start(params.x, targetX, fromRight ? -velocityX : velocityX);
+        } else {
+            params.x = targetX;
+            relayout();
+            onPositionChanged();
+            emitMoved();
+            service.onOverlayStateChanged();
+        }
+    }
+
+    // Returns params.x for the edge of the usable area given by positionGravity
+    private int positionGravityX(float velocityX) {
+        DisplayGeometry geometry = service.getDisplayGeometry(attachedDisplayId);
+        int usableWidth = geometry.usableWidth();
+        int left;
+        switch (positionGravity) {
+            case 1: // right
+                left = usableWidth - viewWidth;
+                break;
+            case 2: // left
+                left = 0;
+                break;
+            case 3: // auto
+                // A fling carries the overlay to the edge it is thrown towards
+                float projectedX = toScreenX(geometry, params.x) - geometry.insetLeft
+                    + (snapAnimated ? velocityX * FLING_PROJECTION_SECONDS : 0);
+                left = projectedX + viewWidth / 2f > usableWidth / 2f ? usableWidth - viewWidth : 0;
+                break;
+            default: // none
+                return params.x;
+        }
+        return toParamsX(geometry, geometry.insetLeft + left);
+    }
+
+    // Window operations, timed when metrics are enabled
+    private void addWindow() {
+        long start = OverlayMetrics.start();
+        windowManager.addView(overlayView, params);
+        OverlayMetrics.recordWindow(OverlayMetrics.ADD_VIEW, start);
+    }
+
+    private void relayout() {
+        if (screenOff || hidden) {
+            // Applied by updateSuspension() once the overlay can be seen again
+            relayoutPending = true;
+            suspendedRelayouts++;
+            return;
+        }
+        updateWindow();
+    }
+
+    // Applies params to the window right away, along with any relayout held back
+    private void updateWindow() {
+        relayoutPending = false;
+        long start = OverlayMetrics.start();
+        windowManager.updateViewLayout(overlayView, params);
+        OverlayMetrics.recordWindow(OverlayMetrics.UPDATE_VIEW_LAYOUT, start);
+    }
+
+    private void removeWindow() {
+        long start = OverlayMetrics.start();
+        windowManager.removeView(overlayView);
+        OverlayMetrics.recordWindow(OverlayMetrics.REMOVE_VIEW, start);
+    }
+
+    // Publishes the window's top-left corner on screen for lock-free reads and feeds the opt-in
+    // position stream
+    private void onPositionChanged() {
+        DisplayGeometry geometry = service.getDisplayGeometry(attachedDisplayId);
+        int x = toScreenX(geometry, params.x);
+        int y = toScreenY(geometry, params.y);
+        position.set(((long) x << 32) | (y & 0xFFFFFFFFL));
+        positionStream.onPosition(x, y);
+    }
+
+    // Conversions between params.x/y under the window's gravity and screen coordinates of its
+    // top-left corner on a display with the given geometry
+    private int toScreenX(DisplayGeometry geometry, int x) {
+        return geometry.insetLeft + toScreen(params.gravity & Gravity.HORIZONTAL_GRAVITY_MASK,
+            Gravity.RIGHT, Gravity.CENTER_HORIZONTAL, x, geometry.usableWidth() - viewWidth);
+    }
+
+    private int toScreenY(DisplayGeometry geometry, int y) {
+        return geometry.insetTop + toScreen(params.gravity & Gravity.VERTICAL_GRAVITY_MASK,
+            Gravity.BOTTOM, Gravity.CENTER_VERTICAL, y, geometry.usableHeight() - viewHeight);
+    }
+
+    private int toParamsX(DisplayGeometry geometry, int screenX) {
+        return fromScreen(params.gravity & Gravity.HORIZONTAL_GRAVITY_MASK, Gravity.RIGHT,
+            Gravity.CENTER_HORIZONTAL, screenX - geometry.insetLeft, geometry.usableWidth() - viewWidth);
+    }
+
+    private int toParamsY(DisplayGeometry geometry, int screenY) {
+        return fromScreen(params.gravity & Gravity.VERTICAL_GRAVITY_MASK, Gravity.BOTTOM,
+            Gravity.CENTER_VERTICAL, screenY - geometry.insetTop, geometry.usableHeight() - viewHeight);
+    }
+
+    // params.x/y are offsets from the edge or center the gravity names, within the usable area;
+    // maps an offset to the distance of the window's leading edge from the area's start
+    private static int toScreen(int gravity, int end, int center, int offset, int room) {
+        if (gravity == end) return room - offset;
+        if (gravity == center) return room / 2 + offset;
+        return offset;
+    }
+
+    // Inverse of toScreen
+    private static int fromScreen(int gravity, int end, int center, int distance, int room) {
+        if (gravity == end) return room - distance;
+        if (gravity == center) return distance - room / 2;
+        return distance;
+    }
+
+    // Reports the position published by onPositionChanged() as the overlay coming to rest
+    private void emitMoved() {
+        int[] position = getPosition();
+        OverlayService.events.add(OverlayEventBatcher.MOVED, idBytes, position[0], position[1]);
+    }
+
+    /**
+     * Writes the overlay's live configuration, geometry and content for {@link OverlayStateStore}.
+     * Read back by {@link #restoreState(DataInputStream)}.
+     */
+    void writeState(DataOutput out) throws IOException {
+        // params outlive a window shed by shedHiddenView(), so a shed overlay keeps its place
+        boolean placed = params != null;
+        out.writeInt(overlayWidth);
+        out.writeInt(overlayHeight);
+        out.writeInt(alignment);
+        out.writeInt(flag);
+        out.writeInt(placed ? params.gravity : alignment);
+        out.writeInt(placed ? params.x : 0);
+        out.writeInt(placed ? params.y : 0);
+        out.writeInt(displayId);
+        out.writeByte(positionGravity);
+        out.writeByte((enableDrag ? 1 : 0) | (flutterContent ? 1 << 1 : 0)
+            | (snapAnimated ? 1 << 2 : 0) | (hidden ? 1 << 3 : 0));
+        out.writeFloat(snapStiffness);
+        out.writeFloat(snapDampingRatio);
+        OverlayStateStore.writeString(out, title);
+        OverlayStateStore.writeString(out, content);
+        if (payload == null) {
+            out.writeInt(-1);
+        } else {
+            ByteBuffer view = payload.duplicate();
+            view.flip();
+            byte[] bytes = new byte[view.remaining()];
+            view.get(bytes);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /** Rebuilds the window from state written by {@link #writeState(DataOutput)}. */
+    void restoreState(DataInputStream in) throws IOException {
+        overlayWidth = in.readInt();
+        overlayHeight = in.readInt();
+        alignment = in.readInt();
+        flag = in.readInt();
+        int gravity = in.readInt();
+        int x = in.readInt();
+        int y = in.readInt();
+        displayId = service.resolveDisplayId(in.readInt());
+        positionGravity = in.readUnsignedByte();
+        int options = in.readUnsignedByte();
+        enableDrag = (options & 1) != 0;
+        flutterContent = (options & 1 << 1) != 0;
+        snapAnimated = (options & 1 << 2) != 0;
+        snapStiffness = in.readFloat();
+        snapDampingRatio = in.readFloat();
+        String title = OverlayStateStore.readString(in);
+        String content = OverlayStateStore.readString(in);
+        int payloadSize = OverlayStateStore.readLength(in);
+        if (payloadSize >= 0) {
+            byte[] bytes = new byte[payloadSize];
+            in.readFully(bytes);
+            payload = ByteBuffer.allocateDirect(payloadSize);
+            payload.put(bytes);
+        }
+
+        show(title, content, gravity, x, y);
+        if ((options & 1 << 3) != 0) {
+            hide();
+        }
+    }
+
+    /** Safe to call from any thread; frames are written by one producer at a time. */
+    OverlayFrameChannel getFrameChannel() {
+        return frames;
+    }
+
+    // Shows a frame from the frame channel, adding the frame view over the content on first use
+    private void showFrame(Bitmap frame) {
+        if (overlayView == null) return;
+        if (frameView == null || frameView.getParent() != overlayView) {
+            frameView = new OverlayFrameView(service);
+            RelativeLayout layout = (RelativeLayout) overlayView;
+            // Under the close button, which is the last child
+            layout.addView(frameView, layout.getChildCount() - 1, new RelativeLayout.LayoutParams(
+                RelativeLayout.LayoutParams.MATCH_PARENT,
+                RelativeLayout.LayoutParams.MATCH_PARENT));
+        }
+        frameView.setFrame(frame);
+    }
+
+    /**
+     * The window's top-left corner on screen as {x, y}, as of the last applied position. Safe to
+     * call from any thread.
+     */
+    int[] getPosition() {
+        long packed = position.get();
+        return new int[]{(int) (packed >> 32), (int) packed};
+    }
+
+    void putStats(Map<String, Object> stats) {
+        stats.put("overlayViewsCreated", overlayViewsCreated);
+        stats.put("overlayInPlaceUpdates", overlayInPlaceUpdates);
+
+        stats.put("dragMoveRequests", dragScheduler.getMoveRequests());
+        stats.put("dragTouchSamples", dragScheduler.getTouchSamples());
+        stats.put("dragRelayoutsApplied", dragScheduler.getAppliedRelayouts());
+        stats.put("dragRelayoutsSkipped", dragScheduler.getSkippedRelayouts());
+
+        stats.put("shareDataSubmitted", textCoalescer.getSubmitted());
+        stats.put("shareDataApplied", textCoalescer.getApplied());
+        stats.put("shareDataCoalesced", textCoalescer.getCoalesced());
+        stats.put("shareDataSkippedIdentical", textCoalescer.getSkippedIdentical());
+        stats.put("suspendedTextUpdates", textCoalescer.getSuspendedUpdates());
+        stats.put("suspendedRelayouts", suspendedRelayouts);
+        stats.put("suspensionFlushes", suspensionFlushes);
+        stats.put("textLayoutsPrecomputed", textLayout.getPrecomputed());
+        stats.put("textLayoutCacheHits", textLayout.getCacheHits());
+        stats.put("textLayoutsDirect", textLayout.getDirect());
+        stats.put("textLayoutsDiscarded", textLayout.getDiscarded());
+        stats.put("framesReceived", frames.getReceived());
+        stats.put("framesShown", frames.getShown());
+        stats.put("framesDropped", frames.getDropped());
+        stats.put("framesRejected", frames.getRejected());
+        stats.put("frameRate", frames.getFrameRate());
+
+        stats.put("snapAnimations", snapAnimator.getAnimations());
+        stats.put("snapAnimationFrames", snapAnimator.getFrames());
+        stats.put("snapAnimationsCancelled", snapAnimator.getCancellations());
+
+        stats.put("positionEventsEmitted", positionStream.getEmitted());
+        stats.put("positionEventsCoalesced", positionStream.getCoalesced());
+
+        stats.put("frameStatsSent", frameMonitor.getSummariesSent());
+    }
+}
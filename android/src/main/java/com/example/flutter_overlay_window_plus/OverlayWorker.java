@@ -0,0 +1,40 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * The overlay service's background thread, for work that does not touch views: building and
+ * posting notifications, writing the state file, measuring text and aggregating metrics.
+ *
+ * Started with the service and quit when it is destroyed; tasks posted before then still run,
+ * later ones are dropped. Views and the WindowManager stay on the main thread, so tasks hand
+ * results that change them back with {@link #postToMain(Runnable)}.
+ */
+final class OverlayWorker {
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    OverlayWorker() {
+        thread = new HandlerThread("OverlayWorker", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /** Returns false if the worker has quit and the task will not run. */
+    boolean post(Runnable task) {
+        return handler.post(task);
+    }
+
+    void postToMain(Runnable task) {
+        mainHandler.post(task);
+    }
+
+    /** Lets queued tasks finish, then stops the thread. */
+    void quit() {
+        thread.quitSafely();
+    }
+}
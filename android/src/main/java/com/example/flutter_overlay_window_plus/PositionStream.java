@@ -0,0 +1,97 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Opt-in, rate-limited stream of one overlay's position, sent as POSITION events.
+ *
+ * Positions arriving faster than the configured rate are coalesced; the latest one is sent as
+ * soon as the interval allows, so the final position of a drag or move always lands. While
+ * suspended only the latest position is kept, and it is sent on resume. Must be fed from the
+ * main thread.
+ */
+class PositionStream {
+    private static volatile boolean enabled = false;
+    private static volatile long minIntervalNanos = 1_000_000_000L / 30;
+
+    private final byte[] overlayId;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable emitPending = this::emitPending;
+
+    private long lastEmitNanos = 0;
+    private int pendingX, pendingY;
+    private boolean hasPending = false;
+    private boolean emitScheduled = false;
+    private boolean suspended = false;
+
+    // Counters
+    private long emitted = 0;
+    private long coalesced = 0;
+
+    PositionStream(byte[] overlayId) {
+        this.overlayId = overlayId;
+    }
+
+    /** Enables or disables streaming for all overlays, at most {@code maxHz} events per second. */
+    static void configure(boolean enable, int maxHz) {
+        minIntervalNanos = 1_000_000_000L / Math.max(1, maxHz);
+        enabled = enable;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    void onPosition(int x, int y) {
+        if (!enabled) return;
+
+        if (hasPending) coalesced++;
+        pendingX = x;
+        pendingY = y;
+        hasPending = true;
+        if (suspended) return;
+
+        long wait = lastEmitNanos + minIntervalNanos - System.nanoTime();
+        if (wait <= 0) {
+            emitPending();
+        } else if (!emitScheduled) {
+            emitScheduled = true;
+            handler.postDelayed(emitPending, wait / 1_000_000 + 1);
+        }
+    }
+
+    void setSuspended(boolean suspend) {
+        suspended = suspend;
+        if (suspend) {
+            handler.removeCallbacks(emitPending);
+            emitScheduled = false;
+        } else if (hasPending) {
+            emitPending();
+        }
+    }
+
+    void cancel() {
+        handler.removeCallbacks(emitPending);
+        emitScheduled = false;
+        hasPending = false;
+    }
+
+    private void emitPending() {
+        handler.removeCallbacks(emitPending);
+        emitScheduled = false;
+        if (!hasPending) return;
+        hasPending = false;
+        lastEmitNanos = System.nanoTime();
+        emitted++;
+        OverlayService.events.add(OverlayEventBatcher.POSITION, overlayId, pendingX, pendingY);
+    }
+
+    long getEmitted() {
+        return emitted;
+    }
+
+    long getCoalesced() {
+        return coalesced;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.view.Choreographer;
+
+/**
+ * Spring animation of an overlay's x position towards a screen edge.
+ *
+ * Driven by {@link Choreographer}, so the window is relaid out exactly once per vsync while
+ * the animation runs. The spring starts with the fling velocity of the drag that released the
+ * overlay. Must be used from the main thread.
+ */
+class SnapAnimator implements Choreographer.FrameCallback {
+
+    interface Target {
+        void applyX(int x);
+
+        void onSettled();
+    }
+
+    static final float DEFAULT_STIFFNESS = 400f;
+    static final float DEFAULT_DAMPING_RATIO = 0.8f;
+
+    // Integration step cap; stiff springs are unstable with a whole 16ms step
+    private static final float MAX_STEP_SECONDS = 1f / 240f;
+    private static final float MAX_FRAME_SECONDS = 1f / 20f;
+    private static final float SETTLE_DISTANCE = 0.5f;
+    private static final float SETTLE_VELOCITY = 20f; // px/s
+
+    private final Target target;
+    private final Choreographer choreographer;
+
+    float stiffness = DEFAULT_STIFFNESS;
+    float dampingRatio = DEFAULT_DAMPING_RATIO;
+
+    private float x, velocity, targetX;
+    private long lastFrameNanos;
+    private boolean running = false;
+
+    // Counters
+    private long animations = 0;
+    private long frames = 0;
+    private long cancellations = 0;
+
+    SnapAnimator(Target target) {
+        this.target = target;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    /** Animates from {@code fromX} to {@code toX}, starting at {@code velocityX} px/s. */
+    void start(int fromX, int toX, float velocityX) {
+        x = fromX;
+        targetX = toX;
+        velocity = velocityX;
+        lastFrameNanos = 0;
+        animations++;
+        if (!running) {
+            running = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    /** Stops the animation where it is, e.g. when the user grabs the overlay. */
+    void cancel() {
+        if (!running) return;
+        running = false;
+        cancellations++;
+        choreographer.removeFrameCallback(this);
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) return;
+
+        float dt = lastFrameNanos == 0
+            ? 1f / 60f
+            : Math.min((frameTimeNanos - lastFrameNanos) / 1e9f, MAX_FRAME_SECONDS);
+        lastFrameNanos = frameTimeNanos;
+        step(dt);
+        frames++;
+
+        if (Math.abs(x - targetX) < SETTLE_DISTANCE && Math.abs(velocity) < SETTLE_VELOCITY) {
+            running = false;
+            target.applyX(Math.round(targetX));
+            target.onSettled();
+            return;
+        }
+        target.applyX(Math.round(x));
+        choreographer.postFrameCallback(this);
+    }
+
+    // Damped spring with unit mass, integrated with semi-implicit Euler sub-steps
+    private void step(float dt) {
+        int steps = (int) Math.ceil(dt / MAX_STEP_SECONDS);
+        float h = dt / steps;
+        float damping = 2f * dampingRatio * (float) Math.sqrt(stiffness);
+        for (int i = 0; i < steps; i++) {
+            float acceleration = -stiffness * (x - targetX) - damping * velocity;
+            velocity += acceleration * h;
+            x += velocity * h;
+        }
+    }
+
+    long getAnimations() {
+        return animations;
+    }
+
+    long getFrames() {
+        return frames;
+    }
+
+    long getCancellations() {
+        return cancellations;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.widget.TextView;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Applies text to an overlay's TextView with the measurement done off the main thread.
+ *
+ * Text at least {@link #MIN_PRECOMPUTE_LENGTH} characters long is measured into a
+ * {@link PrecomputedTextCompat} on the service's {@link OverlayWorker} with the view's current
+ * text params, then swapped in on the main thread, so the main thread only runs a cheap
+ * {@code setText}. Recent results are kept in a small LRU cache, so repeated strings skip the
+ * background hop. Shorter text is set directly. Only the latest request is applied; a result
+ * that arrives after a newer request, or whose params no longer match the view, is discarded.
+ * Must be used from the main thread.
+ */
+class TextLayoutPipeline {
+    // Below this, measuring on the main thread is cheaper than the thread hop
+    static final int MIN_PRECOMPUTE_LENGTH = 128;
+    private static final int CACHE_SIZE = 16;
+
+    private final OverlayWorker worker;
+    private TextView textView;
+    private final Map<String, PrecomputedTextCompat> cache =
+        new LinkedHashMap<String, PrecomputedTextCompat>(CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PrecomputedTextCompat> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+    // Incremented for every request; read by the worker to skip superseded work
+    private volatile long generation = 0;
+
+    // Counters
+    private long precomputed = 0;
+    private long cacheHits = 0;
+    private long direct = 0;
+    private long discarded = 0;
+
+    TextLayoutPipeline(OverlayWorker worker) {
+        this.worker = worker;
+    }
+
+    /** Targets {@code textView}, dropping any layout still in flight for the previous view. */
+    void attach(TextView textView) {
+        cancel();
+        this.textView = textView;
+    }
+
+    void setText(String text) {
+        final long request = ++generation;
+        if (textView == null) return;
+        if (text.length() < MIN_PRECOMPUTE_LENGTH) {
+            direct++;
+            textView.setText(text);
+            return;
+        }
+
+        final PrecomputedTextCompat.Params params = TextViewCompat.getTextMetricsParams(textView);
+        PrecomputedTextCompat cached = cache.get(text);
+        if (cached != null && cached.getParams().equals(params)) {
+            cacheHits++;
+            TextViewCompat.setPrecomputedText(textView, cached);
+            return;
+        }
+
+        worker.post(() -> {
+            if (request != generation) return;
+            final PrecomputedTextCompat layout = PrecomputedTextCompat.create(text, params);
+            worker.postToMain(() -> apply(request, text, layout));
+        });
+    }
+
+    private void apply(long request, String text, PrecomputedTextCompat layout) {
+        // The view's style may have changed while the text was measured
+        if (request != generation || textView == null
+                || !layout.getParams().equals(TextViewCompat.getTextMetricsParams(textView))) {
+            discarded++;
+            return;
+        }
+        precomputed++;
+        cache.put(text, layout);
+        TextViewCompat.setPrecomputedText(textView, layout);
+    }
+
+    /** Drops any layout still in flight, e.g. before text is set directly on the view. */
+    void cancel() {
+        generation++;
+    }
+
+    /** Drops the cached layouts under memory pressure. Returns the estimated bytes of text freed. */
+    long clearCache() {
+        long bytes = 0;
+        for (String text : cache.keySet()) {
+            bytes += text.length() * 2L;
+        }
+        cache.clear();
+        return bytes;
+    }
+
+    long getPrecomputed() {
+        return precomputed;
+    }
+
+    long getCacheHits() {
+        return cacheHits;
+    }
+
+    long getDirect() {
+        return direct;
+    }
+
+    long getDiscarded() {
+        return discarded;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.flutter_overlay_window_plus;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Latest-wins delivery of overlay text updates.
+ *
+ * Producers may call {@link #submit(String)} from any thread. Only the newest pending text is
+ * kept and it is applied at most once per display frame on the main thread; text identical to
+ * what is already shown is skipped. While suspended, the newest text is kept but not applied
+ * until {@link #setSuspended(boolean)} resumes delivery.
+ */
+class TextUpdateCoalescer implements Choreographer.FrameCallback {
+
+    interface Target {
+        void applyText(String text);
+    }
+
+    private final Target target;
+    private final Choreographer choreographer;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable postFrame;
+
+    private final AtomicReference<String> pending = new AtomicReference<>();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+    private volatile boolean suspended = false;
+
+    // Main thread only
+    private String lastApplied;
+
+    // Counters
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private volatile long applied = 0;
+    private volatile long skippedIdentical = 0;
+    private final AtomicLong suspendedUpdates = new AtomicLong();
+
+    /** Must be created on the main thread. */
+    TextUpdateCoalescer(Target target) {
+        this.target = target;
+        this.choreographer = Choreographer.getInstance();
+        this.postFrame = () -> choreographer.postFrameCallback(this);
+    }
+
+    void submit(String text) {
+        submitted.incrementAndGet();
+        if (pending.getAndSet(text != null ? text : "") != null) {
+            // The previous pending update never reached the screen
+            coalesced.incrementAndGet();
+        }
+        // Checked after publishing the text, so a concurrent resume sees it
+        if (suspended) {
+            suspendedUpdates.incrementAndGet();
+            return;
+        }
+
+        if (frameScheduled.compareAndSet(false, true)) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                choreographer.postFrameCallback(this);
+            } else {
+                mainHandler.post(postFrame);
+            }
+        }
+    }
+
+    /** Records text that was put on screen outside of this coalescer, e.g. when a view is built. */
+    void markApplied(String text) {
+        lastApplied = text;
+    }
+
+    /** Holds back updates while suspended; resuming applies the newest one. Main thread only. */
+    void setSuspended(boolean suspend) {
+        if (suspended == suspend) return;
+        suspended = suspend;
+        if (!suspend && pending.get() != null && frameScheduled.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    /** Drops any pending update. Main thread only. */
+    void cancel() {
+        mainHandler.removeCallbacks(postFrame);
+        choreographer.removeFrameCallback(this);
+        frameScheduled.set(false);
+        pending.set(null);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled.set(false);
+        if (suspended) return;
+        String text = pending.getAndSet(null);
+        if (text == null) return;
+
+        if (text.equals(lastApplied)) {
+            skippedIdentical++;
+            return;
+        }
+        lastApplied = text;
+        applied++;
+        target.applyText(text);
+    }
+
+    long getSubmitted() {
+        return submitted.get();
+    }
+
+    long getApplied() {
+        return applied;
+    }
+
+    long getCoalesced() {
+        return coalesced.get();
+    }
+
+    long getSkippedIdentical() {
+        return skippedIdentical;
+    }
+
+    long getSuspendedUpdates() {
+        return suspendedUpdates.get();
+    }
+}
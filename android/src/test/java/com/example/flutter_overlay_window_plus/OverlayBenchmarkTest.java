@@ -0,0 +1,33 @@
+package com.example.flutter_overlay_window_plus;
+
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs {@link OverlayBenchmarks} when the build is invoked with {@code -Pbenchmarks}; skipped
+ * otherwise. Each benchmark runs in a forked JVM, one by default; compare results between runs
+ * on the same machine rather than reading them as absolute numbers.
+ */
+public class OverlayBenchmarkTest {
+
+    @Test
+    public void runBenchmarks() throws Exception {
+        assumeTrue(Boolean.getBoolean("overlay.benchmarks"));
+
+        Options options = new OptionsBuilder()
+            .include(OverlayBenchmarks.class.getName())
+            .forks(Integer.getInteger("overlay.benchmarkForks", 1))
+            .warmupIterations(3)
+            .warmupTime(TimeValue.milliseconds(500))
+            .measurementIterations(5)
+            .measurementTime(TimeValue.milliseconds(500))
+            .shouldFailOnError(true)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.flutter_overlay_window_plus;
+
+import io.flutter.plugin.common.EventChannel;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH microbenchmarks for the plugin's pure-Java hot paths. Run through
+ * {@link OverlayBenchmarkTest} with {@code ./gradlew testDebugUnitTest -Pbenchmarks}.
+ *
+ * Forked benchmark JVMs have no Robolectric, and the android.jar stubs throw, so the code
+ * measured here must not call into the Android framework; only compile-time constants are
+ * fine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OverlayBenchmarks {
+
+    @State(Scope.Thread)
+    public static class Config {
+        byte[] bytes;
+
+        @Setup
+        public void setUp() {
+            bytes = OverlayConfigBytes.draggable("default", "Live update text");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Updates {
+        List<Object> operations;
+
+        @Setup
+        public void setUp() {
+            operations = new ArrayList<>();
+            operations.add(operation("move", "x", 120, "y", 340));
+            operations.add(operation("resize", "width", 300, "height", 200));
+            Map<String, Object> flag = new HashMap<>();
+            flag.put("op", "flag");
+            flag.put("flag", 1);
+            operations.add(flag);
+        }
+
+        private static Map<String, Object> operation(String op, String k0, int v0, String k1, int v1) {
+            Map<String, Object> operation = new HashMap<>();
+            operation.put("op", op);
+            operation.put(k0, v0);
+            operation.put(k1, v1);
+            return operation;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Events {
+        final byte[] overlayId = "default".getBytes(StandardCharsets.UTF_8);
+        OverlayEventBatcher batcher;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            batcher = new OverlayEventBatcher() {
+                @Override
+                void scheduleFlush() {
+                    // Flushed explicitly by the benchmark
+                }
+            };
+            batcher.setSink(new EventChannel.EventSink() {
+                @Override
+                public void success(Object event) {
+                }
+
+                @Override
+                public void error(String errorCode, String errorMessage, Object errorDetails) {
+                }
+
+                @Override
+                public void endOfStream() {
+                }
+            });
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Payload {
+        final OverlayPayload payload = new OverlayPayload();
+        ByteBuffer buffer;
+
+        @Setup
+        public void setUp() {
+            buffer = ByteBuffer.allocateDirect(64).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, 42);
+            buffer.putLong(4, 1234567890123L);
+            buffer.putDouble(12, 3.5);
+        }
+    }
+
+    // showOverlay argument decoding
+    @Benchmark
+    public OverlayConfig decodeOverlayConfig(Config state) {
+        return OverlayConfig.decode(state.bytes, 0);
+    }
+
+    @Benchmark
+    public OverlayUpdates parseOverlayUpdates(Updates state) {
+        return OverlayUpdates.parse(state.operations);
+    }
+
+    @Benchmark
+    public void mapAlignmentAndFlag(Blackhole blackhole) {
+        for (int i = 0; i < 9; i++) {
+            blackhole.consume(OverlayConfig.getAlignment(i));
+        }
+        blackhole.consume(OverlayConfig.getFlag(0));
+        blackhole.consume(OverlayConfig.getFlag(1));
+        blackhole.consume(OverlayNotificationController.getVisibility(1));
+    }
+
+    // One frame's worth of typical events, encoded and flushed as a batch
+    @Benchmark
+    public void encodeEventBatch(Events state) {
+        state.batcher.add(OverlayEventBatcher.SHOWN, state.overlayId);
+        state.batcher.add(OverlayEventBatcher.MOVED, state.overlayId, 120, 340);
+        state.batcher.add(OverlayEventBatcher.POSITION, state.overlayId, 121, 341);
+        state.batcher.flush();
+    }
+
+    @Benchmark
+    public void readBinaryPayload(Payload state, Blackhole blackhole) {
+        state.payload.bind(OverlayService.DEFAULT_OVERLAY_ID, state.buffer);
+        blackhole.consume(state.payload.getInt32(0));
+        blackhole.consume(state.payload.getInt64(4));
+        blackhole.consume(state.payload.getFloat64(12));
+        state.payload.bind(null, null);
+    }
+
+    // Instrumentation cost while metrics are off, which must stay near zero
+    @Benchmark
+    public void recordMetricsDisabled() {
+        OverlayMetrics.recordWindow(OverlayMetrics.UPDATE_VIEW_LAYOUT, OverlayMetrics.start());
+    }
+}
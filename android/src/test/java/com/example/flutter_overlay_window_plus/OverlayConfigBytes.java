@@ -0,0 +1,40 @@
+package com.example.flutter_overlay_window_plus;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/** Writes showOverlay configs the way the Dart side encodes them, for benchmarks and tests. */
+final class OverlayConfigBytes {
+    private OverlayConfigBytes() {
+    }
+
+    /** A draggable, auto-snapping overlay with a start position and snap animation. */
+    static byte[] draggable(String overlayId, String content) {
+        return encode(overlayId, content, false);
+    }
+
+    /** The same overlay as {@link #draggable}, rendering Flutter content. */
+    static byte[] flutterContent(String overlayId) {
+        return encode(overlayId, "", true);
+    }
+
+    private static byte[] encode(String overlayId, String content, boolean flutterContent) {
+        byte[] id = overlayId.getBytes(StandardCharsets.UTF_8);
+        byte[] title = "Overlay".getBytes(StandardCharsets.UTF_8);
+        byte[] text = content.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(14 + 16 + 6 + id.length + title.length + text.length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        out.put((byte) OverlayConfig.VERSION);
+        out.putInt(300).putInt(200);
+        out.put((byte) 0).put((byte) 1).put((byte) 0).put((byte) 3);
+        // enableDrag, startPosition, snapAnimation, optionally flutterContent
+        out.put((byte) (1 | 1 << 2 | 1 << 3 | (flutterContent ? 1 << 1 : 0)));
+        out.putInt(40).putInt(80);
+        out.putFloat(SnapAnimator.DEFAULT_STIFFNESS).putFloat(SnapAnimator.DEFAULT_DAMPING_RATIO);
+        for (byte[] string : new byte[][]{id, title, text}) {
+            out.putShort((short) string.length).put(string);
+        }
+        return out.array();
+    }
+}
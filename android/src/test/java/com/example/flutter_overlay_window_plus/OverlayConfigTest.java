@@ -0,0 +1,71 @@
+package com.example.flutter_overlay_window_plus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.view.Gravity;
+import android.view.WindowManager;
+import androidx.core.app.NotificationCompat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Decodes configs written by the Dart encoder. test/fixtures/overlay_config_v1.hex is also
+ * checked against {@code OverlayConfig.encode} by the Dart tests, so a layout change on either
+ * side breaks one of them.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class OverlayConfigTest {
+
+    @Test
+    public void decodesDartFixture() throws IOException {
+        OverlayConfig config = OverlayConfig.decode(fixture("overlay_config_v1.hex"), 42);
+
+        assertEquals("hud", config.overlayId);
+        assertEquals(300, config.width);
+        assertEquals(-3, config.height);
+        assertEquals(Gravity.TOP | Gravity.RIGHT, config.alignment);
+        assertEquals(NotificationCompat.VISIBILITY_PRIVATE, config.visibility);
+        assertEquals(WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+            | WindowManager.LayoutParams.FLAG_WATCH_OUTSIDE_TOUCH, config.flag);
+        assertEquals(2, config.positionGravity);
+        assertTrue(config.enableDrag);
+        assertTrue(config.flutterContent);
+        assertEquals(-10, config.startX);
+        assertEquals(20, config.startY);
+        assertTrue(config.snapAnimated);
+        assertEquals(500f, config.snapStiffness, 0f);
+        assertEquals(0.5f, config.snapDampingRatio, 0f);
+        assertEquals(2, config.displayId);
+        assertEquals("Title", config.overlayTitle);
+        assertEquals("Contenu \u00e9t\u00e9", config.overlayContent);
+        assertEquals(42, config.requestedAtNanos);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedFixture() throws IOException {
+        byte[] bytes = fixture("overlay_config_v1.hex");
+        OverlayConfig.decode(Arrays.copyOf(bytes, bytes.length - 1), 0);
+    }
+
+    // Reads a whitespace-separated hex fixture shared with the Dart tests
+    private static byte[] fixture(String name) throws IOException {
+        File directory = new File(System.getProperty("overlay.fixtures", "../test/fixtures"));
+        String hex = new String(Files.readAllBytes(new File(directory, name).toPath()),
+            StandardCharsets.UTF_8).trim();
+        String[] values = hex.split("\\s+");
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(values[i], 16);
+        }
+        return bytes;
+    }
+}
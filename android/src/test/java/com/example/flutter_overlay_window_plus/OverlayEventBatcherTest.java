@@ -0,0 +1,228 @@
+package com.example.flutter_overlay_window_plus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import io.flutter.plugin.common.EventChannel;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Replay buffer and sequence numbering of {@link OverlayEventBatcher}. Runs on a plain JVM:
+ * flushes are explicit instead of scheduled on the Choreographer.
+ */
+public class OverlayEventBatcherTest {
+    private static final byte[] ID = {'h', 'u', 'd'};
+
+    private final OverlayEventBatcher batcher = new OverlayEventBatcher() {
+        @Override
+        void scheduleFlush() {
+        }
+    };
+    private final List<long[]> received = new ArrayList<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private final List<Thread> sinkThreads = new ArrayList<>();
+    private final EventChannel.EventSink sink = new EventChannel.EventSink() {
+        @Override
+        public void success(Object event) {
+            sinkThreads.add(Thread.currentThread());
+            int before = received.size();
+            decode((byte[]) event);
+            batchSizes.add(received.size() - before);
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+        }
+
+        @Override
+        public void endOfStream() {
+        }
+    };
+
+    @Test
+    public void replaysEventsSentWhileDetached() {
+        batcher.add(OverlayEventBatcher.SHOWN, ID);
+        batcher.add(OverlayEventBatcher.MOVED, ID, 10, 20);
+        assertEquals(2, batcher.getEventsBuffered());
+
+        batcher.setSink(sink);
+
+        assertEquals(2, received.size());
+        assertArrayEquals(new long[]{0, OverlayEventBatcher.SHOWN}, received.get(0));
+        assertArrayEquals(new long[]{1, OverlayEventBatcher.MOVED, 10, 20}, received.get(1));
+        assertEquals(0, batcher.getEventsBuffered());
+        assertEquals(2, batcher.getEventsReplayed());
+        assertEquals(0, batcher.getEventsDropped());
+    }
+
+    @Test
+    public void keepsUnflushedEventsWhenDetached() {
+        batcher.setSink(sink);
+        batcher.add(OverlayEventBatcher.SHOWN, ID);
+        batcher.setSink(null);
+        assertEquals(1, batcher.getEventsBuffered());
+
+        batcher.setSink(sink);
+
+        assertEquals(1, received.size());
+        assertArrayEquals(new long[]{0, OverlayEventBatcher.SHOWN}, received.get(0));
+    }
+
+    @Test
+    public void overflowReportsDroppedCount() {
+        batcher.setReplayCapacity(2);
+        for (int i = 0; i < 5; i++) {
+            batcher.add(OverlayEventBatcher.POSITION, ID, i);
+        }
+
+        batcher.setSink(sink);
+
+        // The oldest three are evicted; the gap shows in the sequence numbers
+        assertEquals(3, received.size());
+        assertArrayEquals(new long[]{3, OverlayEventBatcher.POSITION, 3}, received.get(0));
+        assertArrayEquals(new long[]{4, OverlayEventBatcher.POSITION, 4}, received.get(1));
+        assertArrayEquals(new long[]{5, OverlayEventBatcher.EVENTS_DROPPED, 3}, received.get(2));
+        assertEquals(3, batcher.getEventsDropped());
+    }
+
+    @Test
+    public void disabledReplayOnlyCountsDropped() {
+        batcher.setReplayCapacity(0);
+        batcher.add(OverlayEventBatcher.SHOWN, ID);
+        batcher.add(OverlayEventBatcher.HIDDEN, ID);
+
+        batcher.setSink(sink);
+
+        assertEquals(1, received.size());
+        assertArrayEquals(new long[]{2, OverlayEventBatcher.EVENTS_DROPPED, 2}, received.get(0));
+    }
+
+    @Test
+    public void shrinkingCapacityKeepsNewest() {
+        for (int i = 0; i < 5; i++) {
+            batcher.add(OverlayEventBatcher.POSITION, ID, i);
+        }
+
+        batcher.setReplayCapacity(2);
+        assertEquals(2, batcher.getEventsBuffered());
+        batcher.setSink(sink);
+
+        assertEquals(3, received.size());
+        assertArrayEquals(new long[]{3, OverlayEventBatcher.POSITION, 3}, received.get(0));
+        assertArrayEquals(new long[]{4, OverlayEventBatcher.POSITION, 4}, received.get(1));
+        assertArrayEquals(new long[]{5, OverlayEventBatcher.EVENTS_DROPPED, 3}, received.get(2));
+    }
+
+    @Test
+    public void growingCapacityKeepsReplayOrder() {
+        batcher.setReplayCapacity(3);
+        for (int i = 0; i < 4; i++) {
+            batcher.add(OverlayEventBatcher.POSITION, ID, i);
+        }
+
+        // The ring has wrapped; resizing must unwrap it oldest first
+        batcher.setReplayCapacity(8);
+        batcher.add(OverlayEventBatcher.POSITION, ID, 4);
+        batcher.setSink(sink);
+
+        assertEquals(5, received.size());
+        for (int i = 0; i < 4; i++) {
+            assertArrayEquals(new long[]{i + 1, OverlayEventBatcher.POSITION, i + 1}, received.get(i));
+        }
+        assertArrayEquals(new long[]{5, OverlayEventBatcher.EVENTS_DROPPED, 1}, received.get(4));
+    }
+
+    @Test
+    public void sequencesContinueAcrossBatchesAndReplays() {
+        batcher.setSink(sink);
+        batcher.add(OverlayEventBatcher.SHOWN, ID);
+        batcher.add(OverlayEventBatcher.MOVED, ID, 1, 2);
+        batcher.flush();
+
+        batcher.setSink(null);
+        batcher.setReplayCapacity(1);
+        batcher.add(OverlayEventBatcher.POSITION, ID, 1);
+        batcher.add(OverlayEventBatcher.POSITION, ID, 2);
+        batcher.setSink(sink);
+
+        batcher.add(OverlayEventBatcher.HIDDEN, ID);
+        batcher.flush();
+
+        long[] sequences = new long[received.size()];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = received.get(i)[0];
+        }
+        // Sequence 2 was evicted, 4 is its EVENTS_DROPPED record
+        assertArrayEquals(new long[]{0, 1, 3, 4, 5}, sequences);
+        assertArrayEquals(new long[]{4, OverlayEventBatcher.EVENTS_DROPPED, 1}, received.get(3));
+        assertEquals(3, batcher.getBatchesSent());
+    }
+
+    @Test
+    public void fullBatchFromBackgroundThreadWaitsForFlush() throws InterruptedException {
+        batcher.setSink(sink);
+        Thread worker = new Thread(() -> {
+            for (int i = 0; i <= 0xFFFF; i++) {
+                batcher.add(OverlayEventBatcher.POSITION, ID, i);
+            }
+        });
+        worker.start();
+        worker.join();
+
+        // Sealed at the u16 limit, but not sent from the adding thread
+        assertEquals(0, received.size());
+
+        batcher.flush();
+
+        assertEquals(Arrays.asList(0xFFFF, 1), batchSizes);
+        for (Thread thread : sinkThreads) {
+            assertEquals(Thread.currentThread(), thread);
+        }
+        for (int i = 0; i <= 0xFFFF; i++) {
+            assertArrayEquals(new long[]{i, OverlayEventBatcher.POSITION, i}, received.get(i));
+        }
+    }
+
+    @Test
+    public void fullBatchPendingAtDetachIsReplayed() {
+        batcher.setSink(sink);
+        batcher.setReplayCapacity(2);
+        for (int i = 0; i <= 0xFFFF; i++) {
+            batcher.add(OverlayEventBatcher.POSITION, ID, i);
+        }
+        batcher.setSink(null);
+
+        batcher.setSink(sink);
+
+        assertEquals(3, received.size());
+        assertArrayEquals(new long[]{0xFFFE, OverlayEventBatcher.POSITION, 0xFFFE}, received.get(0));
+        assertArrayEquals(new long[]{0xFFFF, OverlayEventBatcher.POSITION, 0xFFFF}, received.get(1));
+        assertArrayEquals(new long[]{0x10000, OverlayEventBatcher.EVENTS_DROPPED, 0xFFFE}, received.get(2));
+    }
+
+    // Appends each record of a batch as {sequence, type, values...}
+    private void decode(byte[] batch) {
+        ByteBuffer in = ByteBuffer.wrap(batch).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(OverlayEventBatcher.VERSION, in.get());
+        int recordCount = in.getShort() & 0xFFFF;
+        long sequence = in.getLong();
+        for (int i = 0; i < recordCount; i++) {
+            int type = in.get() & 0xFF;
+            int idLength = in.get() & 0xFF;
+            in.position(in.position() + idLength);
+            int valueCount = in.get() & 0xFF;
+            long[] record = new long[2 + valueCount];
+            record[0] = sequence + i;
+            record[1] = type;
+            for (int v = 0; v < valueCount; v++) {
+                record[2 + v] = in.getLong();
+            }
+            received.add(record);
+        }
+    }
+}
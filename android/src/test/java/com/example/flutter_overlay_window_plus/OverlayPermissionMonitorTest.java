@@ -0,0 +1,130 @@
+package com.example.flutter_overlay_window_plus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.app.AppOpsManager;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Looper;
+import android.os.Process;
+import android.provider.Settings;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.shadows.ShadowSettings;
+
+/** Cached overlay permission and permission requests around the settings page. */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class OverlayPermissionMonitorTest {
+    private Activity activity;
+    private AppOpsManager appOps;
+    private OverlayPermissionMonitor monitor;
+    private final List<Boolean> results = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        activity = Robolectric.buildActivity(Activity.class).setup().get();
+        appOps = (AppOpsManager) activity.getSystemService(Context.APP_OPS_SERVICE);
+        ShadowSettings.setCanDrawOverlays(false);
+        setOpMode(AppOpsManager.MODE_ERRORED);
+        monitor = new OverlayPermissionMonitor(activity.getApplicationContext());
+        monitor.start();
+        monitor.setActivity(activity);
+    }
+
+    @After
+    public void tearDown() {
+        monitor.stop();
+    }
+
+    @Test
+    public void grantedRequestCompletesWithoutSettings() {
+        ShadowSettings.setCanDrawOverlays(true);
+
+        monitor.request(results::add);
+
+        assertEquals(Arrays.asList(true), results);
+        assertNull(shadowOf(activity).getNextStartedActivity());
+    }
+
+    @Test
+    public void requestOpensSettingsAndCompletesOnReturn() {
+        monitor.request(results::add);
+        Intent settings = shadowOf(activity).getNextStartedActivity();
+        assertNotNull(settings);
+        assertEquals(Settings.ACTION_MANAGE_OVERLAY_PERMISSION, settings.getAction());
+
+        monitor.onActivityPaused(activity);
+        monitor.onActivityResumed(activity);
+
+        assertEquals(Arrays.asList(false), results);
+        assertFalse(monitor.isGranted());
+    }
+
+    @Test
+    public void resumeBeforeOpChangeSeesTheGrant() {
+        monitor.request(results::add);
+        monitor.onActivityPaused(activity);
+
+        // Granted, but canDrawOverlays still lags and the op change is not delivered yet
+        setOpMode(AppOpsManager.MODE_ALLOWED);
+        monitor.onActivityResumed(activity);
+
+        assertEquals(Arrays.asList(true), results);
+        assertTrue(monitor.isGranted());
+
+        idle();
+        assertEquals(Arrays.asList(true), results);
+        assertTrue(monitor.isGranted());
+    }
+
+    @Test
+    public void opChangeCompletesRequestWithoutResume() {
+        monitor.request(results::add);
+
+        setOpMode(AppOpsManager.MODE_ALLOWED);
+        monitor.onOpChanged(AppOpsManager.OPSTR_SYSTEM_ALERT_WINDOW, activity.getPackageName());
+        idle();
+
+        assertEquals(Arrays.asList(true), results);
+        assertTrue(monitor.isGranted());
+    }
+
+    @Test
+    public void concurrentRequestsShareOneSettingsPage() {
+        monitor.request(results::add);
+        monitor.request(results::add);
+        assertNotNull(shadowOf(activity).getNextStartedActivity());
+        assertNull(shadowOf(activity).getNextStartedActivity());
+
+        monitor.onActivityPaused(activity);
+        monitor.onActivityResumed(activity);
+
+        assertEquals(Arrays.asList(false, false), results);
+    }
+
+    private void setOpMode(int mode) {
+        shadowOf(appOps).setMode(AppOpsManager.OPSTR_SYSTEM_ALERT_WINDOW, Process.myUid(),
+            activity.getPackageName(), mode);
+    }
+
+    private static void idle() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.flutter_overlay_window_plus;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Looper;
+import android.view.View;
+import android.view.WindowManager;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowWindowManagerImpl;
+
+/**
+ * Soak harness: shows, updates and closes native overlays in a loop on a headless JVM, then
+ * reports throughput, allocation rate and what was left behind. Raise the cycle count with
+ * {@code -PsoakCycles=N}. Flutter-content overlays are not covered, since they need a real
+ * FlutterEngine.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class OverlaySoakTest {
+    private static final int CYCLES = Integer.getInteger("overlay.soakCycles", 200);
+    private static final int OVERLAYS = 4;
+    // show, shareData, moveOverlay, applyOverlayUpdates, closeOverlay
+    private static final int OPS_PER_CYCLE = 5;
+
+    @Test
+    public void showUpdateCloseCycles() {
+        OverlayService.enqueueConfig(config("default", 0));
+        ServiceController<OverlayService> controller =
+            Robolectric.buildService(OverlayService.class, new Intent());
+        OverlayService service = controller.create().startCommand(0, 1).get();
+        WindowManager windowManager = (WindowManager) service.getSystemService(Context.WINDOW_SERVICE);
+        ShadowWindowManagerImpl shadowWindowManager = Shadow.extract(windowManager);
+        OverlayService.closeOverlay("default");
+        idleFrame();
+
+        List<WeakReference<View>> views = new ArrayList<>();
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < CYCLES; i++) {
+            String id = "soak-" + (i % OVERLAYS);
+            service.showOverlay(config(id, i));
+            for (View view : shadowWindowManager.getViews()) {
+                views.add(new WeakReference<>(view));
+            }
+            OverlayService.shareData(id, "update " + i);
+            OverlayService.moveOverlay(id, i, i);
+            OverlayService.applyOverlayUpdates(id, Arrays.asList(resize(200 + i % 50, 100)));
+            idleFrame();
+            OverlayService.closeOverlay(id);
+        }
+        idleFrame();
+
+        long elapsedNanos = System.nanoTime() - start;
+        long allocatedBytes = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        long ops = (long) CYCLES * OPS_PER_CYCLE;
+        int attachedViews = shadowWindowManager.getViews().size();
+        Object overlayCount = OverlayService.getOverlayStats(OverlayService.DEFAULT_OVERLAY_ID).get("overlayCount");
+
+        controller.destroy();
+        idleFrame();
+        int unreclaimedViews = countUnreclaimed(views);
+
+        System.out.printf("Overlay soak: %d cycles, %.0f ops/s, %.1f MB/s allocated (%d bytes/op)%n",
+            CYCLES, ops * 1e9 / elapsedNanos, allocatedBytes * 1e9 / elapsedNanos / (1 << 20),
+            allocatedBytes / ops);
+        System.out.printf("Overlay soak: %d views attached, %s overlays registered, %d of %d views unreclaimed after GC%n",
+            attachedViews, overlayCount, unreclaimedViews, views.size());
+
+        assertEquals("views left attached to the window manager", 0, attachedViews);
+        assertEquals("overlays left in the registry", 0, overlayCount);
+        assertEquals("views unreclaimed after GC", 0, unreclaimedViews);
+    }
+
+    private static OverlayConfig config(String overlayId, int cycle) {
+        return OverlayConfig.decode(OverlayConfigBytes.draggable(overlayId, "cycle " + cycle), 0);
+    }
+
+    private static Map<String, Object> resize(int width, int height) {
+        Map<String, Object> operation = new HashMap<>();
+        operation.put("op", "resize");
+        operation.put("width", width);
+        operation.put("height", height);
+        return operation;
+    }
+
+    // Runs posted work and one frame's Choreographer callbacks
+    private static void idleFrame() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(20));
+    }
+
+    private static int countUnreclaimed(List<WeakReference<View>> views) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        int unreclaimed = 0;
+        for (WeakReference<View> view : views) {
+            if (view.get() != null) unreclaimed++;
+        }
+        return unreclaimed;
+    }
+}
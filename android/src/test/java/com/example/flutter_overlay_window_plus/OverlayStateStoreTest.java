@@ -0,0 +1,117 @@
+package com.example.flutter_overlay_window_plus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Looper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowWindowManagerImpl;
+import org.robolectric.util.ReflectionHelpers;
+
+/** Restoring overlays after a sticky restart from a state file that cannot be trusted. */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class OverlayStateStoreTest {
+    private ServiceController<OverlayService> controller;
+    private OverlayService service;
+    private ShadowWindowManagerImpl windowManager;
+
+    @Before
+    public void setUp() {
+        OverlayService.enqueueConfig(
+            OverlayConfig.decode(OverlayConfigBytes.draggable("default", "text"), 0));
+        controller = Robolectric.buildService(OverlayService.class, new Intent());
+        service = controller.create().startCommand(0, 1).get();
+        windowManager = Shadow.extract(service.getSystemService(Context.WINDOW_SERVICE));
+        idle();
+    }
+
+    @After
+    public void tearDown() {
+        controller.destroy();
+        idle();
+    }
+
+    @Test
+    public void lengthPastTheEndIsRejectedBeforeAllocating() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(Integer.MAX_VALUE);
+        out.write(new byte[16]);
+
+        try {
+            OverlayStateStore.readString(read(bytes.toByteArray()));
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void corruptStateFileStartsClean() throws IOException {
+        assertEquals(1, windowManager.getViews().size());
+
+        // A valid overlay, then one whose id claims more bytes than the file holds
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(3);
+        out.writeInt(0);
+        OverlayStateStore.writeString(out, null);
+        OverlayStateStore.writeString(out, null);
+        out.writeShort(2);
+        OverlayStateStore.writeString(out, "restored");
+        out.write(overlayState());
+        out.writeInt(Integer.MAX_VALUE - 1);
+        try (FileOutputStream file = new FileOutputStream(
+                new File(service.getFilesDir(), "flutter_overlay_window_plus.state"))) {
+            file.write(bytes.toByteArray());
+        }
+
+        // The restart restores the first overlay before it reaches the corrupt one
+        int result = service.onStartCommand(null, 0, 2);
+        idle();
+
+        assertEquals(Service.START_NOT_STICKY, result);
+        assertTrue(shadowOf(service).isStoppedBySelf());
+        assertEquals(0, windowManager.getViews().size());
+    }
+
+    // The state of the overlay shown in setUp, as written for the state file
+    private byte[] overlayState() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OverlayWindow overlay = ReflectionHelpers.callStaticMethod(OverlayService.class, "findOverlay",
+            ReflectionHelpers.ClassParameter.from(String.class, "default"));
+        overlay.writeState(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream read(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private static void idle() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(20));
+    }
+}
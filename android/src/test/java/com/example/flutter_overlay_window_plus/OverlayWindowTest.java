@@ -0,0 +1,113 @@
+package com.example.flutter_overlay_window_plus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.view.View;
+import android.view.WindowManager;
+import io.flutter.embedding.android.FlutterView;
+import java.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowWindowManagerImpl;
+import org.robolectric.util.ReflectionHelpers;
+
+/** Window state of native overlays across hide, show and low-power mode. */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class OverlayWindowTest {
+    private ServiceController<OverlayService> controller;
+    private OverlayService service;
+    private ShadowWindowManagerImpl windowManager;
+
+    @Before
+    public void setUp() {
+        OverlayService.enqueueConfig(
+            OverlayConfig.decode(OverlayConfigBytes.draggable("default", "text"), 0));
+        controller = Robolectric.buildService(OverlayService.class, new Intent());
+        service = controller.create().startCommand(0, 1).get();
+        windowManager = Shadow.extract(service.getSystemService(Context.WINDOW_SERVICE));
+        idle();
+    }
+
+    @After
+    public void tearDown() {
+        controller.destroy();
+        idle();
+    }
+
+    @Test
+    public void hidingInLowPowerStopsTouchesRightAway() {
+        setInteractive(false);
+        OverlayService.hideOverlay("default");
+        idle();
+        assertNotEquals(0, windowFlags() & WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE);
+
+        // Still hidden after leaving low-power mode, so nothing else relays it out
+        setInteractive(true);
+        assertNotEquals(0, windowFlags() & WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE);
+    }
+
+    @Test
+    public void showingAgainRestoresTouches() {
+        OverlayService.hideOverlay("default");
+        idle();
+        service.showOverlay(OverlayConfig.decode(OverlayConfigBytes.draggable("default", "text"), 0));
+        idle();
+        assertEquals(0, windowFlags() & WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE);
+    }
+
+    @Test
+    public void switchingFlutterContentToTextReleasesTheEngine() {
+        // Engines need the Flutter native library, so the manager is mocked and only its calls checked
+        try (MockedStatic<OverlayEngineManager> engines = Mockito.mockStatic(OverlayEngineManager.class)) {
+            service.showOverlay(OverlayConfig.decode(OverlayConfigBytes.flutterContent("default"), 0));
+            idle();
+            engines.verify(() -> OverlayEngineManager.attach(any(), eq("default"), any(), any()));
+
+            service.showOverlay(OverlayConfig.decode(OverlayConfigBytes.draggable("default", "text"), 0));
+            idle();
+            engines.verify(() -> OverlayEngineManager.detach(eq("default"), any(FlutterView.class), eq(true)));
+            engines.verify(() -> OverlayEngineManager.detach(any(), any(), eq(false)), Mockito.never());
+        }
+    }
+
+    // Flags the window manager last applied, not the overlay's own copy of the params
+    private int windowFlags() {
+        assertEquals(1, windowManager.getViews().size());
+        View view = windowManager.getViews().get(0);
+        Object viewRoot = ReflectionHelpers.callInstanceMethod(view, "getViewRootImpl");
+        WindowManager.LayoutParams attributes =
+            ReflectionHelpers.getField(viewRoot, "mWindowAttributes");
+        return attributes.flags;
+    }
+
+    private void setInteractive(boolean interactive) {
+        PowerManager powerManager = (PowerManager) service.getSystemService(Context.POWER_SERVICE);
+        shadowOf(powerManager).setIsInteractive(interactive);
+        service.sendBroadcast(new Intent(interactive ? Intent.ACTION_SCREEN_ON : Intent.ACTION_SCREEN_OFF));
+        idle();
+    }
+
+    private static void idle() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(20));
+    }
+}
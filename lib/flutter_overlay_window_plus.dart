@@ -1,24 +1,54 @@
 import 'dart:async';
+import 'dart:convert';
 
 import 'package:flutter/foundation.dart';
 import 'package:flutter/services.dart';
 
+import 'src/overlay_config.dart';
+import 'src/overlay_display.dart';
 import 'src/overlay_enums.dart';
+import 'src/overlay_event_codec.dart';
+import 'src/overlay_frame.dart';
+import 'src/overlay_metrics.dart';
 import 'src/overlay_position.dart';
+import 'src/overlay_snap_animation.dart';
+import 'src/overlay_update.dart';
 
 // Export enums and classes for public use
+export 'src/overlay_config.dart';
+export 'src/overlay_display.dart';
 export 'src/overlay_enums.dart';
+export 'src/overlay_frame.dart';
+export 'src/overlay_metrics.dart';
 export 'src/overlay_position.dart';
+export 'src/overlay_snap_animation.dart';
+export 'src/overlay_update.dart';
 
 class FlutterOverlayWindowPlus {
+  /// Id used by every overlay method when no `overlayId` is given
+  static const String defaultOverlayId = 'default';
+
   static const MethodChannel _channel =
       MethodChannel('flutter_overlay_window_plus');
   static const EventChannel _eventChannel =
       EventChannel('flutter_overlay_window_plus_events');
+  static const BasicMessageChannel<ByteData?> _binaryChannel =
+      BasicMessageChannel('flutter_overlay_window_plus/binary', BinaryCodec());
+  static const BasicMessageChannel<ByteData?> _frameChannel =
+      BasicMessageChannel('flutter_overlay_window_plus/frames', BinaryCodec());
+  static const BasicMessageChannel<String?> _overlayMessageChannel =
+      BasicMessageChannel(
+          'flutter_overlay_window_plus/overlay_messages', StringCodec());
+  static const BasicMessageChannel<ByteData?> _overlayPayloadChannel =
+      BasicMessageChannel(
+          'flutter_overlay_window_plus/overlay_payloads', BinaryCodec());
 
   static Stream<dynamic>? _overlayListener;
+  static StreamController<String>? _overlayMessages;
+  static StreamController<ByteData>? _overlayPayloads;
 
   /// Check if overlay permission is granted
+  /// Answered from a cached state the plugin keeps current, so it is cheap to call
   static Future<bool> isPermissionGranted() async {
     try {
       final bool result = await _channel.invokeMethod('isPermissionGranted');
@@ -30,7 +60,8 @@ class FlutterOverlayWindowPlus {
   }
 
   /// Request overlay permission
-  /// Opens the overlay settings page and returns true once permission is granted
+  /// Opens the overlay settings page and completes once the user decided: true
+  /// as soon as access is granted, false if they returned without granting it
   static Future<bool> requestPermission() async {
     try {
       final bool result = await _channel.invokeMethod('requestPermission');
@@ -43,6 +74,10 @@ class FlutterOverlayWindowPlus {
 
   /// Show overlay window
   ///
+  /// Several overlays can be shown at once by giving each its own
+  /// [overlayId]. If the overlay with that id is already shown (or hidden with
+  /// [hideOverlay]) it is updated in place rather than recreated.
+  ///
   /// [height] - overlay height (default: WindowSize.fullCover)
   /// [width] - overlay width (default: WindowSize.matchParent)
   /// [alignment] - overlay position on screen (default: OverlayAlignment.center)
@@ -52,7 +87,11 @@ class FlutterOverlayWindowPlus {
   /// [overlayContent] - notification content
   /// [enableDrag] - enable/disable dragging (default: false)
   /// [positionGravity] - position gravity after drag (default: PositionGravity.none)
+  /// [snapAnimation] - spring towards the [positionGravity] edge instead of jumping (default: null)
   /// [startPosition] - initial overlay position
+  /// [flutterContent] - render `overlayMain()` instead of the native text view (default: false)
+  /// [overlayId] - which overlay to show or update (default: [defaultOverlayId])
+  /// [displayId] - display to show it on, from [getDisplays] (default: the built-in display)
   static Future<bool> showOverlay({
     int? height,
     int? width,
@@ -63,23 +102,32 @@ class FlutterOverlayWindowPlus {
     String? overlayContent,
     bool enableDrag = false,
     PositionGravity positionGravity = PositionGravity.none,
+    SnapAnimation? snapAnimation,
     OverlayPosition? startPosition,
+    bool flutterContent = false,
+    String overlayId = defaultOverlayId,
+    int? displayId,
   }) async {
     try {
-      final Map<String, dynamic> arguments = {
-        'height': height ?? WindowSize.fullCover,
-        'width': width ?? WindowSize.matchParent,
-        'alignment': alignment.index,
-        'visibility': visibility.index,
-        'flag': flag.index,
-        'overlayTitle': overlayTitle,
-        'overlayContent': overlayContent ?? overlayTitle,
-        'enableDrag': enableDrag,
-        'positionGravity': positionGravity.index,
-        'startPosition': startPosition?.toMap(),
-      };
+      final config = OverlayConfig(
+        overlayId: overlayId,
+        height: height ?? WindowSize.fullCover,
+        width: width ?? WindowSize.matchParent,
+        alignment: alignment,
+        visibility: visibility,
+        flag: flag,
+        overlayTitle: overlayTitle,
+        overlayContent: overlayContent ?? overlayTitle,
+        enableDrag: enableDrag,
+        positionGravity: positionGravity,
+        snapAnimation: snapAnimation,
+        startPosition: startPosition,
+        flutterContent: flutterContent,
+        displayId: displayId,
+      );
 
-      final bool result = await _channel.invokeMethod('showOverlay', arguments);
+      final bool result =
+          await _channel.invokeMethod('showOverlay', config.encode());
       return result;
     } on PlatformException catch (e) {
       debugPrint('Error showing overlay: ${e.message}');
@@ -87,10 +135,29 @@ class FlutterOverlayWindowPlus {
     }
   }
 
+  /// Hide overlay without closing it
+  ///
+  /// The window stays attached, so the next [showOverlay] call restores it
+  /// with a single relayout instead of rebuilding it.
+  static Future<bool> hideOverlay({String overlayId = defaultOverlayId}) async {
+    try {
+      final bool result =
+          await _channel.invokeMethod('hideOverlay', {'overlayId': overlayId});
+      return result;
+    } on PlatformException catch (e) {
+      debugPrint('Error hiding overlay: ${e.message}');
+      return false;
+    }
+  }
+
   /// Close overlay if open
-  static Future<bool> closeOverlay() async {
+  ///
+  /// Closes only the overlay with [overlayId] when given, otherwise all
+  /// overlays. The service stops once no overlay is left.
+  static Future<bool> closeOverlay({String? overlayId}) async {
     try {
-      final bool result = await _channel.invokeMethod('closeOverlay');
+      final bool result = await _channel.invokeMethod(
+          'closeOverlay', overlayId != null ? {'overlayId': overlayId} : null);
       return result;
     } on PlatformException catch (e) {
       debugPrint('Error closing overlay: ${e.message}');
@@ -99,10 +166,14 @@ class FlutterOverlayWindowPlus {
   }
 
   /// Share data between overlay and main app
-  static Future<bool> shareData(String data) async {
+  ///
+  /// Updates are latest-wins: at most one is shown per frame and intermediate
+  /// values sent in a burst may be skipped.
+  static Future<bool> shareData(String data,
+      {String overlayId = defaultOverlayId}) async {
     try {
-      final bool result =
-          await _channel.invokeMethod('shareData', {'data': data});
+      final bool result = await _channel
+          .invokeMethod('shareData', {'data': data, 'overlayId': overlayId});
       return result;
     } on PlatformException catch (e) {
       debugPrint('Error sharing data: ${e.message}');
@@ -110,11 +181,62 @@ class FlutterOverlayWindowPlus {
     }
   }
 
+  /// Share a binary payload with the overlay
+  ///
+  /// The bytes are passed on without string encoding, behind a short header
+  /// naming the overlay. Inside `overlayMain()` they arrive on
+  /// [overlayPayloads]; natively they can be read in place with
+  /// `OverlayPayload`. Multi-byte fields should be written in little-endian
+  /// order (e.g. `data.setInt32(0, value, Endian.little)`). Only the latest
+  /// payload is kept while the overlay is hidden or the screen is off, and it
+  /// survives a restart of the overlay service. Only available in the app's
+  /// engine, not inside `overlayMain()`.
+  static Future<bool> shareBinaryData(ByteData data,
+      {String overlayId = defaultOverlayId}) async {
+    final id = utf8.encode(overlayId);
+    if (id.length > 0xFF) {
+      throw ArgumentError.value(overlayId, 'overlayId', 'Too long');
+    }
+    final message = Uint8List(1 + id.length + data.lengthInBytes)
+      ..[0] = id.length
+      ..setRange(1, 1 + id.length, id)
+      ..setRange(1 + id.length, 1 + id.length + data.lengthInBytes,
+          data.buffer.asUint8List(data.offsetInBytes, data.lengthInBytes));
+    try {
+      await _binaryChannel.send(ByteData.sublistView(message));
+      return true;
+    } on PlatformException catch (e) {
+      debugPrint('Error sharing binary data: ${e.message}');
+      return false;
+    }
+  }
+
+  /// Send a raw frame to be shown over the overlay's content
+  ///
+  /// For live thumbnails and small video frames. The pixels are copied once,
+  /// off the main thread, into one of three native bitmaps that the overlay
+  /// draws directly. The future completes once the frame was taken, so
+  /// awaiting it before reusing [frame] paces the producer. Frames sent faster
+  /// than the display shows them replace each other; the shown rate is sent to
+  /// [overlayListener] once per second as `overlay_frame_rate` events.
+  /// Returns false if the frame is malformed or no overlay has its id, and
+  /// inside `overlayMain()`, since only the app's engine can send frames.
+  static Future<bool> sendFrame(OverlayFrame frame) async {
+    try {
+      final reply = await _frameChannel.send(ByteData.sublistView(frame.bytes));
+      return reply != null && reply.lengthInBytes > 0 && reply.getUint8(0) == 1;
+    } on PlatformException catch (e) {
+      debugPrint('Error sending frame: ${e.message}');
+      return false;
+    }
+  }
+
   /// Update overlay flag while overlay is active
-  static Future<bool> updateFlag(OverlayFlag flag) async {
+  static Future<bool> updateFlag(OverlayFlag flag,
+      {String overlayId = defaultOverlayId}) async {
     try {
-      final bool result =
-          await _channel.invokeMethod('updateFlag', {'flag': flag.index});
+      final bool result = await _channel.invokeMethod(
+          'updateFlag', {'flag': flag.index, 'overlayId': overlayId});
       return result;
     } on PlatformException catch (e) {
       debugPrint('Error updating flag: ${e.message}');
@@ -123,9 +245,11 @@ class FlutterOverlayWindowPlus {
   }
 
   /// Resize overlay
-  static Future<bool> resizeOverlay(int width, int height) async {
+  static Future<bool> resizeOverlay(int width, int height,
+      {String overlayId = defaultOverlayId}) async {
     try {
       final bool result = await _channel.invokeMethod('resizeOverlay', {
+        'overlayId': overlayId,
         'width': width,
         'height': height,
       });
@@ -137,9 +261,14 @@ class FlutterOverlayWindowPlus {
   }
 
   /// Move overlay to new position
-  static Future<bool> moveOverlay(OverlayPosition position) async {
+  ///
+  /// [position] is an offset from the edge or center named by the overlay's
+  /// alignment, see [OverlayPosition].
+  static Future<bool> moveOverlay(OverlayPosition position,
+      {String overlayId = defaultOverlayId}) async {
     try {
       final bool result = await _channel.invokeMethod('moveOverlay', {
+        'overlayId': overlayId,
         'position': position.toMap(),
       });
       return result;
@@ -149,11 +278,41 @@ class FlutterOverlayWindowPlus {
     }
   }
 
-  /// Get current overlay position
-  static Future<OverlayPosition?> getOverlayPosition() async {
+  /// Apply several geometry and flag changes at once
+  ///
+  /// All [updates] are validated and merged natively into one window layout
+  /// change, so moving, resizing and changing the flag together costs a
+  /// single platform call and relayout. Later updates of the same kind win.
+  /// Returns the resulting geometry, or null if the overlay with [overlayId]
+  /// is not shown or an update is invalid.
+  static Future<OverlayGeometry?> applyOverlayUpdates(
+      List<OverlayUpdate> updates,
+      {String overlayId = defaultOverlayId}) async {
     try {
       final Map<dynamic, dynamic>? result =
-          await _channel.invokeMethod('getOverlayPosition');
+          await _channel.invokeMethod('applyOverlayUpdates', {
+        'overlayId': overlayId,
+        'operations': updates.map((update) => update.toMap()).toList(),
+      });
+      if (result != null) {
+        return OverlayGeometry.fromMap(Map<String, dynamic>.from(result));
+      }
+      return null;
+    } on PlatformException catch (e) {
+      debugPrint('Error applying overlay updates: ${e.message}');
+      return null;
+    }
+  }
+
+  /// Get current overlay position
+  ///
+  /// The window's top-left corner on screen, in pixels, whatever its
+  /// alignment. Returns null if the overlay with [overlayId] is not shown.
+  static Future<OverlayPosition?> getOverlayPosition(
+      {String overlayId = defaultOverlayId}) async {
+    try {
+      final Map<dynamic, dynamic>? result = await _channel
+          .invokeMethod('getOverlayPosition', {'overlayId': overlayId});
       if (result != null) {
         return OverlayPosition.fromMap(Map<String, dynamic>.from(result));
       }
@@ -164,6 +323,224 @@ class FlutterOverlayWindowPlus {
     }
   }
 
+  /// Configure the foreground notification shown while overlays are active
+  ///
+  /// Notification updates are limited to [maxUpdatesPerSecond]; faster
+  /// updates are coalesced and the latest content is always shown. With
+  /// [mirrorSharedData], text sent with [shareData] is also shown in the
+  /// notification.
+  static Future<bool> configureNotification(
+      {int maxUpdatesPerSecond = 5, bool mirrorSharedData = false}) async {
+    try {
+      final bool result = await _channel.invokeMethod('configureNotification', {
+        'maxUpdatesPerSecond': maxUpdatesPerSecond,
+        'mirrorSharedData': mirrorSharedData,
+      });
+      return result;
+    } on PlatformException catch (e) {
+      debugPrint('Error configuring notification: ${e.message}');
+      return false;
+    }
+  }
+
+  /// Report overlay rendering smoothness as `overlay_frame_stats` events
+  ///
+  /// While enabled, each overlay sends a summary to [overlayListener] for
+  /// each fixed, back-to-back one-second window in which it rendered (not a
+  /// sliding window): `frames`, `droppedFrames` and the `p50FrameMicros`,
+  /// `p90FrameMicros`, `p99FrameMicros` and `maxFrameMicros` percentiles.
+  /// These are intervals between the vsyncs of consecutive frames in which
+  /// the overlay drew, not how long a frame took to render; an interval
+  /// spanning several refresh periods of the overlay's display counts the
+  /// extra periods as `droppedFrames`. Nothing is sent while the overlay is
+  /// not redrawing.
+  static Future<bool> setFrameMonitoring({bool enabled = true}) async {
+    try {
+      final bool result = await _channel
+          .invokeMethod('setFrameMonitoring', {'enabled': enabled});
+      return result;
+    } on PlatformException catch (e) {
+      debugPrint('Error setting frame monitoring: ${e.message}');
+      return false;
+    }
+  }
+
+  /// Stream live overlay positions as `overlay_position` events
+  ///
+  /// When enabled, positions from drags and programmatic moves are sent to
+  /// [overlayListener] at most [maxHz] times per second per overlay. The last
+  /// position of a movement is always delivered.
+  static Future<bool> setPositionStreaming(
+      {bool enabled = true, int maxHz = 30}) async {
+    try {
+      final bool result = await _channel.invokeMethod(
+          'setPositionStreaming', {'enabled': enabled, 'maxHz': maxHz});
+      return result;
+    } on PlatformException catch (e) {
+      debugPrint('Error setting position streaming: ${e.message}');
+      return false;
+    }
+  }
+
+  /// Keep up to [bufferSize] events while nothing listens to [overlayListener]
+  ///
+  /// Events sent while the app's engine is detached or before the first
+  /// listener subscribes are buffered, oldest dropped first, and delivered
+  /// when a listener subscribes. If any were dropped, the replay ends with an
+  /// `overlay_events_dropped` event whose `count` says how many. A
+  /// [bufferSize] of 0 drops events sent without a listener.
+  static Future<bool> configureEventReplay({int bufferSize = 64}) async {
+    try {
+      final bool result = await _channel
+          .invokeMethod('configureEventReplay', {'bufferSize': bufferSize});
+      return result;
+    } on PlatformException catch (e) {
+      debugPrint('Error configuring event replay: ${e.message}');
+      return false;
+    }
+  }
+
+  /// Displays overlays can be shown on, for the `displayId` of [showOverlay]
+  ///
+  /// Overlays follow rotations and size changes of their display, keeping
+  /// their relative place; each change is sent to [overlayListener] as an
+  /// `overlay_display_changed` event. Overlays on a display that is removed
+  /// move to the built-in display.
+  static Future<List<OverlayDisplay>> getDisplays() async {
+    try {
+      final List<dynamic>? result = await _channel.invokeMethod('getDisplays');
+      return result
+              ?.map((display) =>
+                  OverlayDisplay.fromMap(Map<String, dynamic>.from(display)))
+              .toList() ??
+          const [];
+    } on PlatformException catch (e) {
+      debugPrint('Error getting displays: ${e.message}');
+      return const [];
+    }
+  }
+
+  /// Current [OverlayPowerMode] of the overlay service
+  ///
+  /// Changes are also sent to [overlayListener] as `overlay_power_mode`
+  /// events, with `lowPower` set to 1 or 0.
+  static Future<OverlayPowerMode?> getPowerMode() async {
+    try {
+      final int index = await _channel.invokeMethod('getPowerMode');
+      return OverlayPowerMode.values[index];
+    } on PlatformException catch (e) {
+      debugPrint('Error getting power mode: ${e.message}');
+      return null;
+    }
+  }
+
+  /// Choose when the engine running `overlayMain()` is started
+  ///
+  /// The mode is persisted, so [OverlayEngineWarmUp.eager] also pre-warms the
+  /// engine on the next app launch as soon as the plugin attaches.
+  static Future<bool> setEngineWarmUpMode(OverlayEngineWarmUp mode) async {
+    try {
+      final bool result = await _channel
+          .invokeMethod('setEngineWarmUpMode', {'mode': mode.index});
+      return result;
+    } on PlatformException catch (e) {
+      debugPrint('Error setting engine warm-up mode: ${e.message}');
+      return false;
+    }
+  }
+
+  /// Enable or disable the built-in latency metrics
+  ///
+  /// While disabled (the default) the instrumentation costs next to nothing.
+  static Future<bool> setMetricsEnabled(bool enabled) async {
+    try {
+      final bool result =
+          await _channel.invokeMethod('setMetricsEnabled', {'enabled': enabled});
+      return result;
+    } on PlatformException catch (e) {
+      debugPrint('Error setting metrics: ${e.message}');
+      return false;
+    }
+  }
+
+  /// Get latency histograms of method calls, window operations and events
+  ///
+  /// Returns null if the metrics could not be read.
+  static Future<OverlayMetrics?> getMetrics() async {
+    try {
+      final Map<dynamic, dynamic>? result =
+          await _channel.invokeMethod('getMetrics');
+      if (result != null) {
+        return OverlayMetrics.fromMap(Map<String, dynamic>.from(result));
+      }
+      return null;
+    } on PlatformException catch (e) {
+      debugPrint('Error getting metrics: ${e.message}');
+      return null;
+    }
+  }
+
+  /// Clear all collected metrics
+  static Future<bool> resetMetrics() async {
+    try {
+      final bool result = await _channel.invokeMethod('resetMetrics');
+      return result;
+    } on PlatformException catch (e) {
+      debugPrint('Error resetting metrics: ${e.message}');
+      return false;
+    }
+  }
+
+  /// Get runtime counters of the overlay service
+  ///
+  /// Per-overlay counters are those of [overlayId].
+  ///
+  /// - Service: `overlayCount`, `activeEngines`, `binaryPayloads`
+  /// - [showOverlay] latency: `showIntentCalls`, `showIntentAvgMicros` (cold
+  ///   start through startService), `showBoundCalls`, `showBoundAvgMicros`
+  ///   (running service called directly)
+  /// - Notification: `notificationsPosted`, `notificationsCoalesced`,
+  ///   `notificationsSkippedIdentical`
+  /// - Drag: `dragMoveRequests`, `dragTouchSamples`, `dragRelayoutsApplied`,
+  ///   `dragRelayoutsSkipped`
+  /// - Snap animation: `snapAnimations`, `snapAnimationFrames`,
+  ///   `snapAnimationsCancelled`
+  /// - [shareData] delivery: `shareDataSubmitted`, `shareDataApplied`,
+  ///   `shareDataCoalesced`, `shareDataSkippedIdentical`
+  /// - Text layout: `textLayoutsPrecomputed` (measured off the main thread),
+  ///   `textLayoutCacheHits`, `textLayoutsDirect` (short text set directly),
+  ///   `textLayoutsDiscarded`
+  /// - Window reuse: `overlayViewsCreated`, `overlayInPlaceUpdates`
+  /// - Position stream: `positionEventsEmitted`, `positionEventsCoalesced`
+  /// - Frame monitor: `frameStatsSent`
+  /// - Engine: `engineWarmUpMode`, `engineStartupMs`,
+  ///   `engineTimeToFirstFrameMs` (timings are -1 until measured)
+  /// - Event replay: `eventsBuffered`, `eventsReplayed`, `eventsDropped`
+  /// - Power: `lowPowerMode` (1 while in [OverlayPowerMode.lowPower]),
+  ///   `lowPowerEntries`, and per overlay `suspendedTextUpdates`,
+  ///   `suspendedRelayouts`, `suspensionFlushes`
+  /// - Frames: per overlay `framesReceived`, `framesShown`, `framesDropped`
+  ///   (replaced before shown), `framesRejected` (malformed), `frameRate`
+  /// - Displays: `displayMeasurements`, `displayGeometryChanges`,
+  ///   `overlaysRemapped`
+  /// - Memory pressure: `memoryTrims`, `memoryBytesShed` (estimated),
+  ///   `hiddenViewsShed`, `enginesShed`
+  /// - Permission: `permissionChecks` (system queries), `permissionCacheHits`
+  /// - State file: `stateSnapshotsWritten`, `stateSnapshotsSkipped` (unchanged),
+  ///   `stateRestoreMicros` (-1 unless restored after a sticky restart)
+  static Future<Map<String, int>> getOverlayStats(
+      {String overlayId = defaultOverlayId}) async {
+    try {
+      final Map<dynamic, dynamic>? result = await _channel
+          .invokeMethod('getOverlayStats', {'overlayId': overlayId});
+      return result?.map((key, value) => MapEntry(key as String, value as int)) ??
+          {};
+    } on PlatformException catch (e) {
+      debugPrint('Error getting overlay stats: ${e.message}');
+      return {};
+    }
+  }
+
   /// Minimize the application to background
   static Future<bool> minimizeApp() async {
     try {
@@ -176,8 +553,50 @@ class FlutterOverlayWindowPlus {
   }
 
   /// Stream for listening to overlay events
+  ///
+  /// Native events arrive batched once per frame in a compact binary form and
+  /// are decoded here into one map per event, numbered by `sequence`. Events
+  /// sent before subscribing are replayed on subscription, see
+  /// [configureEventReplay]. Only available in the app's engine, not inside
+  /// `overlayMain()`.
   static Stream<dynamic> get overlayListener {
-    _overlayListener ??= _eventChannel.receiveBroadcastStream();
+    _overlayListener ??= _eventChannel.receiveBroadcastStream().expand(
+        (event) => event is Uint8List ? decodeOverlayEvents(event) : [event]);
     return _overlayListener!;
   }
+
+  /// Data sent with [shareData], received inside `overlayMain()`
+  ///
+  /// Only emits in the overlay's engine, i.e. when shown with
+  /// `flutterContent: true`.
+  static Stream<String> get overlayMessages {
+    if (_overlayMessages == null) {
+      _overlayMessages = StreamController<String>.broadcast();
+      _overlayMessageChannel.setMessageHandler((message) async {
+        if (message != null) {
+          _overlayMessages!.add(message);
+        }
+        return null;
+      });
+    }
+    return _overlayMessages!.stream;
+  }
+
+  /// Payloads sent with [shareBinaryData], received inside `overlayMain()`
+  ///
+  /// Only emits in the overlay's engine, i.e. when shown with
+  /// `flutterContent: true`. A newly started engine first receives the last
+  /// payload sent before it.
+  static Stream<ByteData> get overlayPayloads {
+    if (_overlayPayloads == null) {
+      _overlayPayloads = StreamController<ByteData>.broadcast();
+      _overlayPayloadChannel.setMessageHandler((payload) async {
+        if (payload != null) {
+          _overlayPayloads!.add(payload);
+        }
+        return null;
+      });
+    }
+    return _overlayPayloads!.stream;
+  }
 }
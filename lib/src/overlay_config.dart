@@ -0,0 +1,189 @@
+import 'dart:convert';
+import 'dart:typed_data';
+
+import 'overlay_enums.dart';
+import 'overlay_position.dart';
+import 'overlay_snap_animation.dart';
+
+/// Version of the binary config written by [OverlayConfig.encode], mirrored in
+/// `OverlayConfig.java`
+const int overlayConfigVersion = 1;
+
+const int _enableDrag = 1;
+const int _flutterContent = 1 << 1;
+const int _startPosition = 1 << 2;
+const int _snapAnimation = 1 << 3;
+const int _displayId = 1 << 4;
+
+/// Typed configuration of one `showOverlay` call
+///
+/// Sent to the platform as one compact, versioned binary payload that is
+/// decoded natively in a single pass.
+class OverlayConfig {
+  final String overlayId;
+  final int width;
+  final int height;
+  final OverlayAlignment alignment;
+  final NotificationVisibility visibility;
+  final OverlayFlag flag;
+  final String overlayTitle;
+  final String overlayContent;
+  final bool enableDrag;
+  final PositionGravity positionGravity;
+  final SnapAnimation? snapAnimation;
+  final OverlayPosition? startPosition;
+  final bool flutterContent;
+
+  /// Display to show the overlay on, null for the built-in display
+  final int? displayId;
+
+  const OverlayConfig({
+    required this.overlayId,
+    required this.width,
+    required this.height,
+    required this.alignment,
+    required this.visibility,
+    required this.flag,
+    required this.overlayTitle,
+    required this.overlayContent,
+    required this.enableDrag,
+    required this.positionGravity,
+    this.snapAnimation,
+    this.startPosition,
+    required this.flutterContent,
+    this.displayId,
+  });
+
+  /// Encode into the binary layout documented in `OverlayConfig.java`
+  Uint8List encode() {
+    final id = _utf8(overlayId);
+    final title = _utf8(overlayTitle);
+    final content = _utf8(overlayContent);
+    final length = 14 +
+        (startPosition != null ? 8 : 0) +
+        (snapAnimation != null ? 8 : 0) +
+        (displayId != null ? 4 : 0) +
+        6 +
+        id.length +
+        title.length +
+        content.length;
+
+    final data = ByteData(length);
+    var offset = 0;
+    data.setUint8(offset++, overlayConfigVersion);
+    data.setInt32(offset, width, Endian.little);
+    offset += 4;
+    data.setInt32(offset, height, Endian.little);
+    offset += 4;
+    data.setUint8(offset++, alignment.index);
+    data.setUint8(offset++, visibility.index);
+    data.setUint8(offset++, flag.index);
+    data.setUint8(offset++, positionGravity.index);
+    data.setUint8(
+        offset++,
+        (enableDrag ? _enableDrag : 0) |
+            (flutterContent ? _flutterContent : 0) |
+            (startPosition != null ? _startPosition : 0) |
+            (snapAnimation != null ? _snapAnimation : 0) |
+            (displayId != null ? _displayId : 0));
+    if (startPosition != null) {
+      data.setInt32(offset, startPosition!.x, Endian.little);
+      data.setInt32(offset + 4, startPosition!.y, Endian.little);
+      offset += 8;
+    }
+    if (snapAnimation != null) {
+      data.setFloat32(offset, snapAnimation!.stiffness, Endian.little);
+      data.setFloat32(offset + 4, snapAnimation!.dampingRatio, Endian.little);
+      offset += 8;
+    }
+    if (displayId != null) {
+      data.setInt32(offset, displayId!, Endian.little);
+      offset += 4;
+    }
+
+    final bytes = data.buffer.asUint8List();
+    for (final string in [id, title, content]) {
+      data.setUint16(offset, string.length, Endian.little);
+      offset += 2;
+      bytes.setRange(offset, offset + string.length, string);
+      offset += string.length;
+    }
+    return bytes;
+  }
+
+  /// Decode a config written by [encode]
+  factory OverlayConfig.decode(Uint8List bytes) {
+    final data = ByteData.sublistView(bytes);
+    if (bytes.isEmpty || data.getUint8(0) != overlayConfigVersion) {
+      throw const FormatException('Unsupported overlay config version');
+    }
+
+    var offset = 1;
+    final width = data.getInt32(offset, Endian.little);
+    final height = data.getInt32(offset + 4, Endian.little);
+    offset += 8;
+    final alignment = OverlayAlignment.values[data.getUint8(offset++)];
+    final visibility = NotificationVisibility.values[data.getUint8(offset++)];
+    final flag = OverlayFlag.values[data.getUint8(offset++)];
+    final positionGravity = PositionGravity.values[data.getUint8(offset++)];
+    final options = data.getUint8(offset++);
+
+    OverlayPosition? startPosition;
+    if (options & _startPosition != 0) {
+      startPosition = OverlayPosition(data.getInt32(offset, Endian.little),
+          data.getInt32(offset + 4, Endian.little));
+      offset += 8;
+    }
+    SnapAnimation? snapAnimation;
+    if (options & _snapAnimation != 0) {
+      snapAnimation = SnapAnimation(
+        stiffness: data.getFloat32(offset, Endian.little),
+        dampingRatio: data.getFloat32(offset + 4, Endian.little),
+      );
+      offset += 8;
+    }
+    int? displayId;
+    if (options & _displayId != 0) {
+      displayId = data.getInt32(offset, Endian.little);
+      offset += 4;
+    }
+
+    String readString() {
+      final length = data.getUint16(offset, Endian.little);
+      offset += 2;
+      final string = utf8.decode(bytes.sublist(offset, offset + length));
+      offset += length;
+      return string;
+    }
+
+    return OverlayConfig(
+      overlayId: readString(),
+      overlayTitle: readString(),
+      overlayContent: readString(),
+      width: width,
+      height: height,
+      alignment: alignment,
+      visibility: visibility,
+      flag: flag,
+      enableDrag: options & _enableDrag != 0,
+      positionGravity: positionGravity,
+      snapAnimation: snapAnimation,
+      startPosition: startPosition,
+      flutterContent: options & _flutterContent != 0,
+      displayId: displayId,
+    );
+  }
+
+  // Strings are length-prefixed with a u16; longer ones are cut at the last
+  // character boundary within the limit
+  static List<int> _utf8(String string) {
+    final bytes = utf8.encode(string);
+    if (bytes.length <= 0xFFFF) return bytes;
+    var end = 0xFFFF;
+    // Back off over continuation bytes (10xxxxxx) to the start of a character
+    while (bytes[end] & 0xC0 == 0x80) {
+      end--;
+    }
+    return bytes.sublist(0, end);
+  }
+}
@@ -0,0 +1,78 @@
+/// A display overlays can be shown on, as returned by `getDisplays`
+///
+/// Sizes are in physical pixels, in the display's current rotation. The
+/// insets cover the system bars and the display cutout; overlays are placed
+/// within the area they leave.
+class OverlayDisplay {
+  /// Id to pass as `displayId` to `showOverlay`; 0 is the built-in display
+  final int displayId;
+
+  /// Full width in pixels
+  final int width;
+
+  /// Full height in pixels
+  final int height;
+
+  /// Quarter turns from the natural orientation, 0 to 3
+  final int rotation;
+
+  final int insetLeft;
+  final int insetTop;
+  final int insetRight;
+  final int insetBottom;
+
+  const OverlayDisplay({
+    required this.displayId,
+    required this.width,
+    required this.height,
+    this.rotation = 0,
+    this.insetLeft = 0,
+    this.insetTop = 0,
+    this.insetRight = 0,
+    this.insetBottom = 0,
+  });
+
+  /// Width left for overlays once the insets are taken out
+  int get usableWidth => width - insetLeft - insetRight;
+
+  /// Height left for overlays once the insets are taken out
+  int get usableHeight => height - insetTop - insetBottom;
+
+  /// Create OverlayDisplay from map
+  factory OverlayDisplay.fromMap(Map<String, dynamic> map) {
+    return OverlayDisplay(
+      displayId: map['displayId'] as int? ?? 0,
+      width: map['width'] as int? ?? 0,
+      height: map['height'] as int? ?? 0,
+      rotation: map['rotation'] as int? ?? 0,
+      insetLeft: map['insetLeft'] as int? ?? 0,
+      insetTop: map['insetTop'] as int? ?? 0,
+      insetRight: map['insetRight'] as int? ?? 0,
+      insetBottom: map['insetBottom'] as int? ?? 0,
+    );
+  }
+
+  @override
+  String toString() {
+    return 'OverlayDisplay(displayId: $displayId, size: ${width}x$height, '
+        'rotation: $rotation, insets: $insetLeft/$insetTop/$insetRight/$insetBottom)';
+  }
+
+  @override
+  bool operator ==(Object other) {
+    if (identical(this, other)) return true;
+    return other is OverlayDisplay &&
+        other.displayId == displayId &&
+        other.width == width &&
+        other.height == height &&
+        other.rotation == rotation &&
+        other.insetLeft == insetLeft &&
+        other.insetTop == insetTop &&
+        other.insetRight == insetRight &&
+        other.insetBottom == insetBottom;
+  }
+
+  @override
+  int get hashCode => Object.hash(displayId, width, height, rotation, insetLeft,
+      insetTop, insetRight, insetBottom);
+}
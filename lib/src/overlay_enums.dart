@@ -70,3 +70,25 @@ enum PositionGravity {
   /// Auto-stick to left or right side depending on position
   auto,
 }
+
+/// When the FlutterEngine running `overlayMain()` is created and released
+enum OverlayEngineWarmUp {
+  /// Start the engine on first show and destroy it when the overlay closes
+  lazy,
+
+  /// Start the engine as soon as the plugin attaches and keep it alive
+  eager,
+
+  /// Start the engine on first show and keep it alive between shows
+  keepAlive,
+}
+
+/// Whether overlays apply updates as they arrive or hold them back
+enum OverlayPowerMode {
+  /// The overlays can be seen and apply updates immediately
+  active,
+
+  /// The screen is off or locked, so nobody can see the overlays; text,
+  /// relayouts and position events are held back and applied once on resume
+  lowPower,
+}
@@ -0,0 +1,89 @@
+import 'dart:convert';
+import 'dart:typed_data';
+
+/// Version of the binary event batch format written by `OverlayEventBatcher`
+const int overlayEventBatchVersion = 2;
+
+/// Event names and value names by type code, mirrored in `OverlayEventBatcher.java`
+const Map<int, String> _eventNames = {
+  1: 'overlay_shown',
+  2: 'overlay_hidden',
+  3: 'overlay_moved',
+  4: 'overlay_closed',
+  5: 'overlay_first_frame',
+  6: 'overlay_position',
+  7: 'overlay_frame_stats',
+  8: 'overlay_events_dropped',
+  9: 'overlay_power_mode',
+  10: 'overlay_resources_shed',
+  11: 'overlay_resources_restored',
+  12: 'overlay_display_changed',
+  13: 'overlay_frame_rate',
+};
+
+const Map<int, List<String>> _valueNames = {
+  3: ['x', 'y'],
+  5: ['timeToFirstFrameMs'],
+  6: ['x', 'y'],
+  7: [
+    'frames',
+    'droppedFrames',
+    'p50FrameMicros',
+    'p90FrameMicros',
+    'p99FrameMicros',
+    'maxFrameMicros',
+  ],
+  8: ['count'],
+  9: ['lowPower'],
+  10: ['tier', 'freedBytes', 'viewsShed', 'enginesReleased'],
+  11: ['restoredBytes'],
+  12: ['displayId', 'width', 'height', 'rotation'],
+  13: ['framesPerSecond', 'droppedFrames'],
+};
+
+/// Decodes a batch of overlay events sent as one binary payload
+///
+/// Each event becomes a map with `event`, `overlayId`, its `sequence` number
+/// and its named values. Sequence numbers increase by one per event, so a gap
+/// means events were lost.
+List<Map<String, dynamic>> decodeOverlayEvents(Uint8List bytes) {
+  final data = ByteData.sublistView(bytes);
+  if (data.lengthInBytes < 11 ||
+      data.getUint8(0) != overlayEventBatchVersion) {
+    return const [];
+  }
+
+  final count = data.getUint16(1, Endian.little);
+  final firstSequence = data.getInt64(3, Endian.little);
+  final events = <Map<String, dynamic>>[];
+  var offset = 11;
+  for (var i = 0; i < count; i++) {
+    final type = data.getUint8(offset++);
+    final idLength = data.getUint8(offset++);
+    final overlayId = utf8.decode(bytes.sublist(offset, offset + idLength));
+    offset += idLength;
+    final valueCount = data.getUint8(offset++);
+
+    final event = <String, dynamic>{
+      'event': _eventNames[type] ?? 'unknown_$type',
+      'overlayId': overlayId,
+      'sequence': firstSequence + i,
+    };
+    final names = _valueNames[type] ?? const <String>[];
+    final values = <int>[];
+    for (var v = 0; v < valueCount; v++) {
+      final value = data.getInt64(offset, Endian.little);
+      offset += 8;
+      if (v < names.length) {
+        event[names[v]] = value;
+      } else {
+        values.add(value);
+      }
+    }
+    if (values.isNotEmpty) {
+      event['values'] = values;
+    }
+    events.add(event);
+  }
+  return events;
+}
@@ -0,0 +1,57 @@
+import 'dart:convert';
+import 'dart:typed_data';
+
+/// Version of the binary frame message read by `OverlayFrameChannel.java`
+const int overlayFrameVersion = 1;
+
+const int _rgba8888 = 0;
+const int _headerLength = 7;
+
+/// A reusable buffer for raw frames sent to an overlay with `sendFrame`
+///
+/// The header is written once; fill [pixels] with premultiplied RGBA pixels,
+/// row by row (the layout of `Image.toByteData(format: ImageByteFormat.rawRgba)`),
+/// and send the frame. Nothing is encoded or copied on the Dart side, so the
+/// buffer can be refilled and sent again as soon as the previous `sendFrame`
+/// completed.
+class OverlayFrame {
+  /// Width in pixels, 1 to 65535
+  final int width;
+
+  /// Height in pixels, 1 to 65535
+  final int height;
+
+  final String overlayId;
+
+  /// The whole message: header followed by the pixels
+  final Uint8List bytes;
+
+  /// The RGBA pixels, `width * height * 4` bytes, to write each frame into
+  final Uint8List pixels;
+
+  OverlayFrame._(this.width, this.height, this.overlayId, this.bytes,
+      int pixelsOffset)
+      : pixels = Uint8List.sublistView(bytes, pixelsOffset);
+
+  factory OverlayFrame(int width, int height,
+      {String overlayId = 'default'}) {
+    if (width < 1 || width > 0xFFFF || height < 1 || height > 0xFFFF) {
+      throw ArgumentError('Frame size must be 1 to 65535 pixels per side');
+    }
+    final id = utf8.encode(overlayId);
+    if (id.length > 0xFF) {
+      throw ArgumentError.value(overlayId, 'overlayId', 'Too long');
+    }
+
+    final pixelsOffset = _headerLength + id.length;
+    final bytes = Uint8List(pixelsOffset + width * height * 4);
+    ByteData.sublistView(bytes)
+      ..setUint8(0, overlayFrameVersion)
+      ..setUint8(1, _rgba8888)
+      ..setUint16(2, width, Endian.little)
+      ..setUint16(4, height, Endian.little)
+      ..setUint8(6, id.length);
+    bytes.setRange(_headerLength, pixelsOffset, id);
+    return OverlayFrame._(width, height, overlayId, bytes, pixelsOffset);
+  }
+}
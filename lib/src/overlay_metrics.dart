@@ -0,0 +1,110 @@
+/// Latency histogram of one instrumented operation
+class LatencyHistogram {
+  /// Number of recorded calls
+  final int count;
+
+  /// Sum of all recorded latencies in microseconds
+  final int totalMicros;
+
+  /// Slowest recorded call in microseconds
+  final int maxMicros;
+
+  /// Calls per bucket; bucket `i` counts latencies below
+  /// `OverlayMetrics.bucketBoundsMicros[i]`, the last bucket everything slower
+  final List<int> buckets;
+
+  const LatencyHistogram({
+    required this.count,
+    required this.totalMicros,
+    required this.maxMicros,
+    required this.buckets,
+  });
+
+  /// Create LatencyHistogram from map
+  factory LatencyHistogram.fromMap(Map<String, dynamic> map) {
+    return LatencyHistogram(
+      count: map['count'] as int? ?? 0,
+      totalMicros: map['totalMicros'] as int? ?? 0,
+      maxMicros: map['maxMicros'] as int? ?? 0,
+      buckets: (map['buckets'] as List?)?.cast<int>() ?? const [],
+    );
+  }
+
+  /// Mean latency in microseconds
+  double get meanMicros => count == 0 ? 0 : totalMicros / count;
+
+  @override
+  String toString() {
+    return 'LatencyHistogram(count: $count, meanMicros: ${meanMicros.toStringAsFixed(1)}, maxMicros: $maxMicros)';
+  }
+}
+
+/// Snapshot of the plugin's built-in instrumentation
+///
+/// Collected only while enabled with
+/// `FlutterOverlayWindowPlus.setMetricsEnabled`.
+class OverlayMetrics {
+  /// Whether metrics are being collected
+  final bool enabled;
+
+  /// Time covered by this snapshot, since the last reset
+  final Duration elapsed;
+
+  /// Upper bounds of the histogram buckets in microseconds
+  final List<int> bucketBoundsMicros;
+
+  /// Method-channel calls, keyed by method name
+  final Map<String, LatencyHistogram> methods;
+
+  /// Window operations: `addView`, `updateViewLayout`, `removeView`
+  final Map<String, LatencyHistogram> window;
+
+  /// Event emission: `eventBatch` (delivering one batch to the event sink)
+  final Map<String, LatencyHistogram> events;
+
+  /// Show requests from the plugin to the visible overlay: `showIntent`
+  /// (service started by Intent) and `showBound` (running service called
+  /// directly)
+  final Map<String, LatencyHistogram> service;
+
+  const OverlayMetrics({
+    required this.enabled,
+    required this.elapsed,
+    required this.bucketBoundsMicros,
+    required this.methods,
+    required this.window,
+    required this.events,
+    required this.service,
+  });
+
+  /// Create OverlayMetrics from map
+  factory OverlayMetrics.fromMap(Map<String, dynamic> map) {
+    return OverlayMetrics(
+      enabled: map['enabled'] as bool? ?? false,
+      elapsed: Duration(milliseconds: map['elapsedMs'] as int? ?? 0),
+      bucketBoundsMicros:
+          (map['bucketBoundsMicros'] as List?)?.cast<int>() ?? const [],
+      methods: _histograms(map['methods']),
+      window: _histograms(map['window']),
+      events: _histograms(map['events']),
+      service: _histograms(map['service']),
+    );
+  }
+
+  static Map<String, LatencyHistogram> _histograms(Object? value) {
+    if (value is! Map) return const {};
+    return value.map((key, histogram) => MapEntry(key as String,
+        LatencyHistogram.fromMap(Map<String, dynamic>.from(histogram as Map))));
+  }
+
+  /// Calls per second of [histogram] over [elapsed]
+  double throughput(LatencyHistogram histogram) {
+    final seconds = elapsed.inMicroseconds / Duration.microsecondsPerSecond;
+    return seconds == 0 ? 0 : histogram.count / seconds;
+  }
+
+  @override
+  String toString() {
+    return 'OverlayMetrics(enabled: $enabled, elapsed: $elapsed, methods: $methods, window: $window, events: $events, service: $service)';
+  }
+}
@@ -1,4 +1,11 @@
 /// Represents the position of an overlay window
+///
+/// Positions passed to the plugin (`startPosition`, `moveOverlay`,
+/// `OverlayUpdate.move`) are offsets from the edge or center named by the
+/// overlay's alignment, as Android applies them. Positions reported by the
+/// plugin (`getOverlayPosition`, `OverlayGeometry`, and the
+/// `overlay_position` and `overlay_moved` events) are the window's top-left
+/// corner on screen, in pixels.
 class OverlayPosition {
   /// X coordinate
   final int x;
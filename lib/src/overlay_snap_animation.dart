@@ -0,0 +1,38 @@
+/// Spring used to animate an overlay to the edge picked by its
+/// [PositionGravity] when a drag ends
+///
+/// The spring starts with the velocity of the released drag, so a fling
+/// carries through into the snap.
+class SnapAnimation {
+  /// Spring stiffness; higher values snap faster
+  final double stiffness;
+
+  /// Damping ratio; 1.0 settles without overshoot, lower values bounce
+  final double dampingRatio;
+
+  const SnapAnimation({this.stiffness = 400, this.dampingRatio = 0.8});
+
+  /// Convert to map
+  Map<String, dynamic> toMap() {
+    return {
+      'stiffness': stiffness,
+      'dampingRatio': dampingRatio,
+    };
+  }
+
+  @override
+  String toString() {
+    return 'SnapAnimation(stiffness: $stiffness, dampingRatio: $dampingRatio)';
+  }
+
+  @override
+  bool operator ==(Object other) {
+    if (identical(this, other)) return true;
+    return other is SnapAnimation &&
+        other.stiffness == stiffness &&
+        other.dampingRatio == dampingRatio;
+  }
+
+  @override
+  int get hashCode => stiffness.hashCode ^ dampingRatio.hashCode;
+}
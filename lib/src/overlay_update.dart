@@ -0,0 +1,70 @@
+import 'overlay_enums.dart';
+import 'overlay_position.dart';
+
+/// One operation for `FlutterOverlayWindowPlus.applyOverlayUpdates`
+class OverlayUpdate {
+  final Map<String, dynamic> _operation;
+
+  const OverlayUpdate._(this._operation);
+
+  /// Move the overlay to [position]
+  factory OverlayUpdate.move(OverlayPosition position) {
+    return OverlayUpdate._({'op': 'move', 'x': position.x, 'y': position.y});
+  }
+
+  /// Resize the overlay
+  factory OverlayUpdate.resize(int width, int height) {
+    return OverlayUpdate._({'op': 'resize', 'width': width, 'height': height});
+  }
+
+  /// Change the overlay window flag
+  factory OverlayUpdate.flag(OverlayFlag flag) {
+    return OverlayUpdate._({'op': 'flag', 'flag': flag.index});
+  }
+
+  /// Convert to map
+  Map<String, dynamic> toMap() => Map<String, dynamic>.from(_operation);
+
+  @override
+  String toString() => 'OverlayUpdate($_operation)';
+}
+
+/// Position and size of an overlay window
+class OverlayGeometry {
+  /// Top-left corner of the window on screen
+  final OverlayPosition position;
+
+  /// Window width; may be a [WindowSize] constant
+  final int width;
+
+  /// Window height; may be a [WindowSize] constant
+  final int height;
+
+  const OverlayGeometry(this.position, this.width, this.height);
+
+  /// Create OverlayGeometry from map
+  factory OverlayGeometry.fromMap(Map<String, dynamic> map) {
+    return OverlayGeometry(
+      OverlayPosition.fromMap(map),
+      map['width'] as int? ?? 0,
+      map['height'] as int? ?? 0,
+    );
+  }
+
+  @override
+  String toString() {
+    return 'OverlayGeometry(x: ${position.x}, y: ${position.y}, width: $width, height: $height)';
+  }
+
+  @override
+  bool operator ==(Object other) {
+    if (identical(this, other)) return true;
+    return other is OverlayGeometry &&
+        other.position == position &&
+        other.width == width &&
+        other.height == height;
+  }
+
+  @override
+  int get hashCode => position.hashCode ^ width.hashCode ^ height.hashCode;
+}
@@ -1,9 +1,17 @@
+import 'dart:convert';
+import 'dart:io';
+
 import 'package:flutter/services.dart';
 import 'package:flutter_test/flutter_test.dart';
 import 'package:flutter_overlay_window_plus/flutter_overlay_window_plus.dart';
+import 'package:flutter_overlay_window_plus/src/overlay_event_codec.dart';
 
 void main() {
   const MethodChannel channel = MethodChannel('flutter_overlay_window_plus');
+  const String binaryChannel = 'flutter_overlay_window_plus/binary';
+  const String frameChannel = 'flutter_overlay_window_plus/frames';
+  final sentFrames = <ByteData?>[];
+  final sentPayloads = <ByteData?>[];
 
   TestWidgetsFlutterBinding.ensureInitialized();
 
@@ -19,6 +27,8 @@ void main() {
             return true;
           case 'showOverlay':
             return true;
+          case 'hideOverlay':
+            return true;
           case 'closeOverlay':
             return true;
           case 'shareData':
@@ -31,16 +41,89 @@ void main() {
             return true;
           case 'getOverlayPosition':
             return {'x': 100, 'y': 200};
+          case 'applyOverlayUpdates':
+            return {'x': 10, 'y': 20, 'width': 300, 'height': 200};
+          case 'setPositionStreaming':
+            return true;
+          case 'configureNotification':
+            return true;
+          case 'setFrameMonitoring':
+            return true;
+          case 'configureEventReplay':
+            return true;
+          case 'getPowerMode':
+            return 1;
+          case 'getDisplays':
+            return [
+              {
+                'displayId': 0,
+                'width': 1080,
+                'height': 2400,
+                'rotation': 0,
+                'insetLeft': 0,
+                'insetTop': 96,
+                'insetRight': 0,
+                'insetBottom': 48,
+              },
+            ];
+          case 'setMetricsEnabled':
+            return true;
+          case 'resetMetrics':
+            return true;
+          case 'getMetrics':
+            return {
+              'enabled': true,
+              'elapsedMs': 2000,
+              'bucketBoundsMicros': [50, 100],
+              'methods': {
+                'showOverlay': {
+                  'count': 4,
+                  'totalMicros': 400,
+                  'maxMicros': 180,
+                  'buckets': [1, 2, 1],
+                },
+              },
+              'window': {},
+              'events': {},
+              'service': {},
+            };
+          case 'setEngineWarmUpMode':
+            return true;
+          case 'getOverlayStats':
+            return {'dragRelayoutsApplied': 10, 'dragRelayoutsSkipped': 30};
           default:
             return null;
         }
       },
     );
+    sentPayloads.clear();
+    TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+        .setMockMessageHandler(
+      binaryChannel,
+      (ByteData? message) async {
+        sentPayloads.add(message);
+        return null;
+      },
+    );
+    sentFrames.clear();
+    TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+        .setMockMessageHandler(
+      frameChannel,
+      (ByteData? message) async {
+        sentFrames.add(message);
+        // Taken
+        return ByteData(1)..setUint8(0, 1);
+      },
+    );
   });
 
   tearDown(() {
     TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
         .setMockMethodCallHandler(channel, null);
+    TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+        .setMockMessageHandler(binaryChannel, null);
+    TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+        .setMockMessageHandler(frameChannel, null);
   });
 
   group('FlutterOverlayWindowPlus', () {
@@ -73,16 +156,113 @@ void main() {
       expect(result, true);
     });
 
+    test('showOverlay sends snapAnimation', () async {
+      MethodCall? call;
+      TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+          .setMockMethodCallHandler(channel, (MethodCall methodCall) async {
+        call = methodCall;
+        return true;
+      });
+
+      await FlutterOverlayWindowPlus.showOverlay(
+        enableDrag: true,
+        positionGravity: PositionGravity.auto,
+        snapAnimation: const SnapAnimation(stiffness: 600, dampingRatio: 1.0),
+      );
+
+      final config = OverlayConfig.decode(call!.arguments as Uint8List);
+      expect(config.snapAnimation,
+          const SnapAnimation(stiffness: 600, dampingRatio: 1.0));
+      expect(config.positionGravity, PositionGravity.auto);
+    });
+
+    test('hideOverlay returns true', () async {
+      final result = await FlutterOverlayWindowPlus.hideOverlay();
+      expect(result, true);
+    });
+
     test('closeOverlay returns true', () async {
       final result = await FlutterOverlayWindowPlus.closeOverlay();
       expect(result, true);
     });
 
+    test('overlay methods send overlayId', () async {
+      final calls = <MethodCall>[];
+      TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+          .setMockMethodCallHandler(channel, (MethodCall methodCall) async {
+        calls.add(methodCall);
+        return true;
+      });
+
+      await FlutterOverlayWindowPlus.showOverlay(overlayId: 'hud');
+      await FlutterOverlayWindowPlus.shareData('data', overlayId: 'hud');
+      await FlutterOverlayWindowPlus.closeOverlay(overlayId: 'hud');
+
+      expect(OverlayConfig.decode(calls.first.arguments as Uint8List).overlayId,
+          'hud');
+      expect(calls.skip(1).map((c) => c.arguments['overlayId']),
+          everyElement('hud'));
+    });
+
     test('shareData returns true', () async {
       final result = await FlutterOverlayWindowPlus.shareData('test data');
       expect(result, true);
     });
 
+    test('shareBinaryData returns true', () async {
+      final data = ByteData(8)..setInt32(0, 42, Endian.little);
+      final result = await FlutterOverlayWindowPlus.shareBinaryData(data);
+      expect(result, true);
+    });
+
+    test('shareBinaryData prefixes the overlay id', () async {
+      final data = ByteData(4)..setInt32(0, 42, Endian.little);
+      await FlutterOverlayWindowPlus.shareBinaryData(data, overlayId: 'hud');
+
+      final message = sentPayloads.single!;
+      expect(message.getUint8(0), 3);
+      expect(
+          utf8.decode(message.buffer.asUint8List(message.offsetInBytes + 1, 3)),
+          'hud');
+      expect(message.getInt32(4, Endian.little), 42);
+    });
+
+    test('sendFrame sends the header and pixels', () async {
+      final frame = OverlayFrame(2, 1, overlayId: 'cam');
+      frame.pixels.setAll(0, [1, 2, 3, 4, 5, 6, 7, 8]);
+
+      final result = await FlutterOverlayWindowPlus.sendFrame(frame);
+      expect(result, true);
+      final message = sentFrames.single!;
+      expect(message.getUint8(0), overlayFrameVersion);
+      expect(message.getUint8(1), 0);
+      expect(message.getUint16(2, Endian.little), 2);
+      expect(message.getUint16(4, Endian.little), 1);
+      expect(message.getUint8(6), 3);
+      expect(message.buffer.asUint8List(message.offsetInBytes + 7, 3),
+          'cam'.codeUnits);
+      expect(message.buffer.asUint8List(message.offsetInBytes + 10, 8),
+          [1, 2, 3, 4, 5, 6, 7, 8]);
+    });
+
+    test('sendFrame reports a rejected frame', () async {
+      TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+          .setMockMessageHandler(
+        frameChannel,
+        (ByteData? message) async => ByteData(1),
+      );
+
+      expect(
+          await FlutterOverlayWindowPlus.sendFrame(
+              OverlayFrame(2, 1, overlayId: 'missing')),
+          false);
+    });
+
+    test('OverlayFrame rejects sizes the header cannot hold', () {
+      expect(() => OverlayFrame(0, 10), throwsArgumentError);
+      expect(() => OverlayFrame(70000, 10), throwsArgumentError);
+    });
+
     test('updateFlag returns true', () async {
       final result =
           await FlutterOverlayWindowPlus.updateFlag(OverlayFlag.defaultFlag);
@@ -107,6 +287,106 @@ void main() {
       expect(result.y, 200);
     });
 
+    test('applyOverlayUpdates sends operations and returns geometry',
+        () async {
+      final result = await FlutterOverlayWindowPlus.applyOverlayUpdates([
+        OverlayUpdate.move(const OverlayPosition(10, 20)),
+        OverlayUpdate.resize(300, 200),
+        OverlayUpdate.flag(OverlayFlag.focusPointer),
+      ]);
+      expect(result,
+          const OverlayGeometry(OverlayPosition(10, 20), 300, 200));
+    });
+
+    test('applyOverlayUpdates returns null when rejected', () async {
+      TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+          .setMockMethodCallHandler(channel, (MethodCall methodCall) async {
+        throw PlatformException(code: 'INVALID_ARGUMENT');
+      });
+
+      final result = await FlutterOverlayWindowPlus.applyOverlayUpdates(
+          [OverlayUpdate.resize(100, 100)]);
+      expect(result, isNull);
+    });
+
+    test('OverlayUpdate maps to an operation', () {
+      expect(OverlayUpdate.move(const OverlayPosition(1, 2)).toMap(),
+          {'op': 'move', 'x': 1, 'y': 2});
+      expect(OverlayUpdate.flag(OverlayFlag.focusPointer).toMap(),
+          {'op': 'flag', 'flag': 1});
+    });
+
+    test('configureNotification returns true', () async {
+      final result = await FlutterOverlayWindowPlus.configureNotification(
+          maxUpdatesPerSecond: 2, mirrorSharedData: true);
+      expect(result, true);
+    });
+
+    test('setMetricsEnabled and resetMetrics return true', () async {
+      expect(await FlutterOverlayWindowPlus.setMetricsEnabled(true), true);
+      expect(await FlutterOverlayWindowPlus.resetMetrics(), true);
+    });
+
+    test('getMetrics returns parsed histograms', () async {
+      final metrics = await FlutterOverlayWindowPlus.getMetrics();
+      expect(metrics, isNotNull);
+      expect(metrics!.enabled, true);
+      expect(metrics.bucketBoundsMicros, [50, 100]);
+      final showOverlay = metrics.methods['showOverlay']!;
+      expect(showOverlay.count, 4);
+      expect(showOverlay.meanMicros, 100);
+      expect(showOverlay.buckets, [1, 2, 1]);
+      expect(metrics.throughput(showOverlay), 2);
+      expect(metrics.window, isEmpty);
+    });
+
+    test('setFrameMonitoring returns true', () async {
+      final result = await FlutterOverlayWindowPlus.setFrameMonitoring();
+      expect(result, true);
+    });
+
+    test('getPowerMode returns the mode', () async {
+      final mode = await FlutterOverlayWindowPlus.getPowerMode();
+      expect(mode, OverlayPowerMode.lowPower);
+    });
+
+    test('getDisplays returns the displays', () async {
+      final displays = await FlutterOverlayWindowPlus.getDisplays();
+      expect(displays, const [
+        OverlayDisplay(
+            displayId: 0,
+            width: 1080,
+            height: 2400,
+            insetTop: 96,
+            insetBottom: 48),
+      ]);
+      expect(displays.single.usableHeight, 2256);
+    });
+
+    test('configureEventReplay returns true', () async {
+      final result =
+          await FlutterOverlayWindowPlus.configureEventReplay(bufferSize: 16);
+      expect(result, true);
+    });
+
+    test('setPositionStreaming returns true', () async {
+      final result =
+          await FlutterOverlayWindowPlus.setPositionStreaming(maxHz: 20);
+      expect(result, true);
+    });
+
+    test('setEngineWarmUpMode returns true', () async {
+      final result = await FlutterOverlayWindowPlus.setEngineWarmUpMode(
+          OverlayEngineWarmUp.eager);
+      expect(result, true);
+    });
+
+    test('getOverlayStats returns counters', () async {
+      final result = await FlutterOverlayWindowPlus.getOverlayStats();
+      expect(result['dragRelayoutsApplied'], 10);
+      expect(result['dragRelayoutsSkipped'], 30);
+    });
+
     test('overlayListener is not null', () {
       final listener = FlutterOverlayWindowPlus.overlayListener;
       expect(listener, isNotNull);
@@ -143,6 +423,247 @@ void main() {
     });
   });
 
+  group('SnapAnimation', () {
+    test('defaults match the native spring', () {
+      const animation = SnapAnimation();
+      expect(animation.toMap(), {'stiffness': 400.0, 'dampingRatio': 0.8});
+    });
+
+    test('equality works correctly', () {
+      expect(const SnapAnimation(stiffness: 300),
+          equals(const SnapAnimation(stiffness: 300)));
+      expect(const SnapAnimation(stiffness: 300),
+          isNot(equals(const SnapAnimation(dampingRatio: 0.5))));
+    });
+  });
+
+  group('OverlayConfig', () {
+    test('round-trips through the binary encoding', () {
+      const config = OverlayConfig(
+        overlayId: 'hud',
+        width: 300,
+        height: WindowSize.fullCover,
+        alignment: OverlayAlignment.topRight,
+        visibility: NotificationVisibility.visibilityPrivate,
+        flag: OverlayFlag.focusPointer,
+        overlayTitle: 'Title',
+        overlayContent: 'Contenu été',
+        enableDrag: true,
+        positionGravity: PositionGravity.left,
+        snapAnimation: SnapAnimation(stiffness: 500, dampingRatio: 0.5),
+        startPosition: OverlayPosition(-10, 20),
+        flutterContent: true,
+        displayId: 2,
+      );
+
+      final bytes = config.encode();
+      expect(bytes[0], overlayConfigVersion);
+
+      final decoded = OverlayConfig.decode(bytes);
+      expect(decoded.overlayId, 'hud');
+      expect(decoded.width, 300);
+      expect(decoded.height, WindowSize.fullCover);
+      expect(decoded.alignment, OverlayAlignment.topRight);
+      expect(decoded.visibility, NotificationVisibility.visibilityPrivate);
+      expect(decoded.flag, OverlayFlag.focusPointer);
+      expect(decoded.overlayTitle, 'Title');
+      expect(decoded.overlayContent, 'Contenu été');
+      expect(decoded.enableDrag, true);
+      expect(decoded.positionGravity, PositionGravity.left);
+      expect(decoded.snapAnimation,
+          const SnapAnimation(stiffness: 500, dampingRatio: 0.5));
+      expect(decoded.startPosition, const OverlayPosition(-10, 20));
+      expect(decoded.flutterContent, true);
+      expect(decoded.displayId, 2);
+    });
+
+    test('omits optional sections', () {
+      const config = OverlayConfig(
+        overlayId: 'a',
+        width: 1,
+        height: 2,
+        alignment: OverlayAlignment.center,
+        visibility: NotificationVisibility.visibilitySecret,
+        flag: OverlayFlag.defaultFlag,
+        overlayTitle: '',
+        overlayContent: '',
+        enableDrag: false,
+        positionGravity: PositionGravity.none,
+        flutterContent: false,
+      );
+
+      final bytes = config.encode();
+      expect(bytes.length, 14 + 6 + 1);
+      final decoded = OverlayConfig.decode(bytes);
+      expect(decoded.startPosition, isNull);
+      expect(decoded.snapAnimation, isNull);
+      expect(decoded.displayId, isNull);
+    });
+
+    // The same bytes are decoded by OverlayConfigTest.java
+    test('encodes the shared fixture', () {
+      const config = OverlayConfig(
+        overlayId: 'hud',
+        width: 300,
+        height: WindowSize.fullCover,
+        alignment: OverlayAlignment.topRight,
+        visibility: NotificationVisibility.visibilityPrivate,
+        flag: OverlayFlag.focusPointer,
+        overlayTitle: 'Title',
+        overlayContent: 'Contenu été',
+        enableDrag: true,
+        positionGravity: PositionGravity.left,
+        snapAnimation: SnapAnimation(stiffness: 500, dampingRatio: 0.5),
+        startPosition: OverlayPosition(-10, 20),
+        flutterContent: true,
+        displayId: 2,
+      );
+
+      final hex = File('test/fixtures/overlay_config_v1.hex')
+          .readAsStringSync()
+          .split(RegExp(r'\s+'))
+          .where((byte) => byte.isNotEmpty);
+      expect(config.encode(), [for (final byte in hex) int.parse(byte, radix: 16)]);
+    });
+
+    test('cuts long strings at a character boundary', () {
+      final config = OverlayConfig(
+        overlayId: '${'a' * 0xFFFE}é',
+        width: 1,
+        height: 2,
+        alignment: OverlayAlignment.center,
+        visibility: NotificationVisibility.visibilitySecret,
+        flag: OverlayFlag.defaultFlag,
+        overlayTitle: '',
+        overlayContent: '',
+        enableDrag: false,
+        positionGravity: PositionGravity.none,
+        flutterContent: false,
+      );
+
+      expect(OverlayConfig.decode(config.encode()).overlayId, 'a' * 0xFFFE);
+    });
+  });
+
+  group('decodeOverlayEvents', () {
+    test('decodes a batch into event maps', () {
+      final data = ByteData(64);
+      var offset = 0;
+      data.setUint8(offset++, overlayEventBatchVersion);
+      data.setUint16(offset, 2, Endian.little);
+      offset += 2;
+      data.setInt64(offset, 41, Endian.little);
+      offset += 8;
+      // overlay_shown for 'a'
+      data.setUint8(offset++, 1);
+      data.setUint8(offset++, 1);
+      data.setUint8(offset++, 'a'.codeUnitAt(0));
+      data.setUint8(offset++, 0);
+      // overlay_moved for 'a' to (10, -20)
+      data.setUint8(offset++, 3);
+      data.setUint8(offset++, 1);
+      data.setUint8(offset++, 'a'.codeUnitAt(0));
+      data.setUint8(offset++, 2);
+      data.setInt64(offset, 10, Endian.little);
+      offset += 8;
+      data.setInt64(offset, -20, Endian.little);
+      offset += 8;
+
+      final events =
+          decodeOverlayEvents(data.buffer.asUint8List(0, offset));
+      expect(events, [
+        {'event': 'overlay_shown', 'overlayId': 'a', 'sequence': 41},
+        {
+          'event': 'overlay_moved',
+          'overlayId': 'a',
+          'sequence': 42,
+          'x': 10,
+          'y': -20,
+        },
+      ]);
+    });
+
+    test('names frame stats values', () {
+      final data = ByteData(11 + 3 + 1 + 1 + 6 * 8);
+      data.setUint8(0, overlayEventBatchVersion);
+      data.setUint16(1, 1, Endian.little);
+      var offset = 11;
+      data.setUint8(offset++, 7);
+      data.setUint8(offset++, 1);
+      data.setUint8(offset++, 'a'.codeUnitAt(0));
+      data.setUint8(offset++, 6);
+      for (final value in [60, 2, 16000, 17000, 33000, 50000]) {
+        data.setInt64(offset, value, Endian.little);
+        offset += 8;
+      }
+
+      expect(decodeOverlayEvents(data.buffer.asUint8List()), [
+        {
+          'event': 'overlay_frame_stats',
+          'overlayId': 'a',
+          'sequence': 0,
+          'frames': 60,
+          'droppedFrames': 2,
+          'p50FrameMicros': 16000,
+          'p90FrameMicros': 17000,
+          'p99FrameMicros': 33000,
+          'maxFrameMicros': 50000,
+        },
+      ]);
+    });
+
+    test('names the dropped events count of a replay', () {
+      final data = ByteData(11 + 3 + 8);
+      data.setUint8(0, overlayEventBatchVersion);
+      data.setUint16(1, 1, Endian.little);
+      data.setInt64(3, 7, Endian.little);
+      data.setUint8(11, 8);
+      data.setUint8(12, 0);
+      data.setUint8(13, 1);
+      data.setInt64(14, 5, Endian.little);
+
+      expect(decodeOverlayEvents(data.buffer.asUint8List()), [
+        {
+          'event': 'overlay_events_dropped',
+          'overlayId': '',
+          'sequence': 7,
+          'count': 5,
+        },
+      ]);
+    });
+
+    test('names the values of a memory pressure shed', () {
+      final data = ByteData(11 + 3 + 4 * 8);
+      data.setUint8(0, overlayEventBatchVersion);
+      data.setUint16(1, 1, Endian.little);
+      data.setUint8(11, 10);
+      data.setUint8(12, 0);
+      data.setUint8(13, 4);
+      var offset = 14;
+      for (final value in [3, 4096000, 1, 2]) {
+        data.setInt64(offset, value, Endian.little);
+        offset += 8;
+      }
+
+      expect(decodeOverlayEvents(data.buffer.asUint8List()), [
+        {
+          'event': 'overlay_resources_shed',
+          'overlayId': '',
+          'sequence': 0,
+          'tier': 3,
+          'freedBytes': 4096000,
+          'viewsShed': 1,
+          'enginesReleased': 2,
+        },
+      ]);
+    });
+
+    test('ignores unknown versions', () {
+      final bytes = Uint8List(11)..[0] = 99;
+      expect(decodeOverlayEvents(bytes), isEmpty);
+    });
+  });
+
   group('WindowSize constants', () {
     test('constants have correct values', () {
       expect(WindowSize.matchParent, -1);
@@ -232,4 +753,21 @@ void main() {
           ]));
     });
   });
+
+  group('OverlayEngineWarmUp enum', () {
+    test('has correct number of values', () {
+      expect(OverlayEngineWarmUp.values.length, 3);
+    });
+
+    test('lazy is first value', () {
+      expect(OverlayEngineWarmUp.lazy.index, 0);
+    });
+  });
+
+  group('OverlayPowerMode enum', () {
+    test('matches the native mode indexes', () {
+      expect(OverlayPowerMode.active.index, 0);
+      expect(OverlayPowerMode.lowPower.index, 1);
+    });
+  });
 }